@@ -181,4 +181,74 @@ async def set_stock(product_id: str, payload: dict):
 
     logger.info("Stock updated productId=%s newQuantity=%d", product_id, qty)
 
-    return {"productId": product_id, "quantity": qty}
\ No newline at end of file
+    return {"productId": product_id, "quantity": qty}
+
+# ---------- ATOMIC ADJUST (reservations) ----------
+
+# Applies a delta only if the result stays >= 0. With an idempotency key the delta is
+# applied at most once, so orders-service can safely retry reserves and releases.
+# "undoes" names the idempotency key of the operation being compensated: if that
+# operation never landed, it is fenced off (a late arrival becomes a no-op) and
+# nothing is applied. Returns the new quantity, or -1 when stock is insufficient.
+ADJUST_SCRIPT = """
+local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+if ARGV[2] ~= '' and redis.call('EXISTS', KEYS[2]) == 1 then
+  return current
+end
+if ARGV[3] ~= '' and redis.call('EXISTS', KEYS[3]) == 0 then
+  redis.call('SET', KEYS[3], '1', 'EX', tonumber(ARGV[4]))
+  if ARGV[2] ~= '' then
+    redis.call('SET', KEYS[2], '1', 'EX', tonumber(ARGV[4]))
+  end
+  return current
+end
+local updated = current + tonumber(ARGV[1])
+if updated < 0 then
+  return -1
+end
+redis.call('SET', KEYS[1], updated)
+if ARGV[2] ~= '' then
+  redis.call('SET', KEYS[2], '1', 'EX', tonumber(ARGV[4]))
+end
+return updated
+"""
+
+IDEMPOTENCY_TTL_SECONDS = int(os.getenv("INVENTORY_IDEMPOTENCY_TTL_SECONDS", "86400"))
+
+
+@app.post("/api/inventory/{product_id}/adjust")
+async def adjust_stock(product_id: str, payload: dict):
+    """
+    Atomically add a (possibly negative) delta to a product's stock.
+    Expected body: { "delta": -2, "idempotencyKey": "order-saga-17-reserve-abc" }
+    A compensating release also sends "undoes": "<idempotencyKey of the reserve>".
+    Responds 409 if the adjustment would make stock negative.
+    """
+    logger.info("Adjust stock request for productId=%s payload=%s", product_id, payload)
+
+    try:
+        delta = int(payload["delta"])
+    except (KeyError, TypeError, ValueError):
+        raise HTTPException(status_code=400, detail="'delta' must be an integer")
+
+    idempotency_key = str(payload.get("idempotencyKey") or "")
+    undoes = str(payload.get("undoes") or "")
+    client = get_redis()
+    result = client.eval(
+        ADJUST_SCRIPT,
+        3,
+        stock_key(product_id),
+        f"stock-adjust:{idempotency_key}",
+        f"stock-adjust:{undoes}",
+        delta,
+        idempotency_key,
+        undoes,
+        IDEMPOTENCY_TTL_SECONDS,
+    )
+    qty = int(result)
+    if qty < 0:
+        logger.warning("Insufficient stock for productId=%s delta=%d", product_id, delta)
+        raise HTTPException(status_code=409, detail="Insufficient stock")
+
+    logger.info("Stock adjusted productId=%s delta=%d newQuantity=%d", product_id, delta, qty)
+    return {"productId": product_id, "quantity": qty}
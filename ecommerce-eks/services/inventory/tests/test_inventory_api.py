@@ -343,3 +343,37 @@ class TestInventoryOperationsIntegrity:
         get_response = client.get("/api/inventory/consistency-test")
         assert get_response.status_code == 200
         assert get_response.json()["quantity"] == 42
+
+
+class TestAdjustStock:
+    """Test atomic stock adjustments used for order reservations."""
+
+    @patch('app.main.get_redis')
+    def test_adjust_returns_new_quantity(self, mock_get_redis, client):
+        """Test successful reservation returns the remaining stock."""
+        mock_redis = MagicMock()
+        mock_redis.eval.return_value = 8
+        mock_get_redis.return_value = mock_redis
+
+        response = client.post("/api/inventory/prod-1/adjust",
+                               json={"delta": -2, "idempotencyKey": "order-saga-1-reserve-prod-1"})
+        assert response.status_code == 200
+        assert response.json() == {"productId": "prod-1", "quantity": 8}
+        args = mock_redis.eval.call_args[0]
+        assert args[2] == "stock:prod-1"
+        assert args[5] == -2
+
+    @patch('app.main.get_redis')
+    def test_adjust_insufficient_stock_returns_409(self, mock_get_redis, client):
+        """Test that stock is never driven below zero."""
+        mock_redis = MagicMock()
+        mock_redis.eval.return_value = -1
+        mock_get_redis.return_value = mock_redis
+
+        response = client.post("/api/inventory/prod-1/adjust", json={"delta": -5})
+        assert response.status_code == 409
+
+    def test_adjust_missing_delta_fails(self, client):
+        """Test that delta is required."""
+        response = client.post("/api/inventory/prod-1/adjust", json={})
+        assert response.status_code == 400
@@ -0,0 +1,151 @@
+package com.shop.orders;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit with priority queueing and a CoDel-style overload signal.
+ * Each class may only use its share of the permits, and a freed permit goes to the
+ * highest-priority waiter first. If the minimum queueing delay over an interval stays
+ * above the target, there is a standing queue: the gate is then overloaded until an
+ * interval's minimum delay drops back under the target.
+ */
+class AdmissionGate {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition[] available = new Condition[RequestPriority.values().length];
+    private final int[] waiting = new int[RequestPriority.values().length];
+    private final int[] limits = new int[RequestPriority.values().length];
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+
+    // Written under lock; volatile so the in-flight gauge can read it
+    private volatile int inFlight;
+    // Guarded by lock
+    private long intervalStart;
+    private long minDelayInInterval = Long.MAX_VALUE;
+    private boolean rejectedInInterval;
+
+    private volatile boolean overloaded;
+
+    AdmissionGate(int maxConcurrent, double normalShare, double bulkShare, long targetNanos, long intervalNanos) {
+        this(maxConcurrent, normalShare, bulkShare, targetNanos, intervalNanos, System::nanoTime);
+    }
+
+    // nanoClock drives queueing delay and intervals; tests pass a manual clock
+    AdmissionGate(int maxConcurrent, double normalShare, double bulkShare, long targetNanos, long intervalNanos,
+                  LongSupplier nanoClock) {
+        for (int i = 0; i < available.length; i++) {
+            available[i] = lock.newCondition();
+        }
+        limits[RequestPriority.CRITICAL.ordinal()] = maxConcurrent;
+        limits[RequestPriority.NORMAL.ordinal()] = Math.max(1, (int) (maxConcurrent * normalShare));
+        limits[RequestPriority.BULK.ordinal()] = Math.max(1, (int) (maxConcurrent * bulkShare));
+        this.targetNanos = targetNanos;
+        this.intervalNanos = intervalNanos;
+        this.nanoClock = nanoClock;
+        this.intervalStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * Waits up to {@code maxWaitNanos} for a permit and returns the time spent queued,
+     * or -1 if the request should be shed.
+     */
+    long acquire(RequestPriority priority, long maxWaitNanos) {
+        long arrival = nanoClock.getAsLong();
+        int p = priority.ordinal();
+        lock.lock();
+        try {
+            endIntervalIfDue(arrival);
+            if (canAdmit(p)) {
+                return admit(arrival, arrival);
+            }
+            if (maxWaitNanos <= 0) {
+                return reject();
+            }
+            waiting[p]++;
+            try {
+                long remaining = maxWaitNanos;
+                while (!canAdmit(p)) {
+                    if (remaining <= 0) {
+                        return reject();
+                    }
+                    remaining = available[p].awaitNanos(remaining);
+                }
+                return admit(arrival, nanoClock.getAsLong());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return reject();
+            } finally {
+                waiting[p]--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            // Wake the highest class that may use the freed permit
+            for (int p = 0; p < available.length; p++) {
+                if (waiting[p] > 0 && inFlight < limits[p]) {
+                    available[p].signalAll();
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isOverloaded() {
+        return overloaded;
+    }
+
+    int inFlight() {
+        return inFlight;
+    }
+
+    // Caller holds lock
+    private boolean canAdmit(int p) {
+        if (inFlight >= limits[p]) {
+            return false;
+        }
+        for (int higher = 0; higher < p; higher++) {
+            if (waiting[higher] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long admit(long arrival, long now) {
+        inFlight++;
+        long delay = now - arrival;
+        minDelayInInterval = Math.min(minDelayInInterval, delay);
+        endIntervalIfDue(now);
+        return delay;
+    }
+
+    private long reject() {
+        rejectedInInterval = true;
+        return -1;
+    }
+
+    private void endIntervalIfDue(long now) {
+        if (now - intervalStart < intervalNanos) {
+            return;
+        }
+        // With no admissions, the interval was overloaded only if requests were turned away
+        overloaded = minDelayInInterval != Long.MAX_VALUE
+                ? minDelayInInterval > targetNanos
+                : rejectedInInterval;
+        minDelayInInterval = Long.MAX_VALUE;
+        rejectedInInterval = false;
+        intervalStart = now;
+    }
+}
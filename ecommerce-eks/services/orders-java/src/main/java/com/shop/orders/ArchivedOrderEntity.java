@@ -0,0 +1,139 @@
+package com.shop.orders;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * Cold-tier copy of an order moved out of the hot orders/order_items tables.
+ * Items are folded into one JSON column so each archived order is a single row.
+ */
+@Entity
+@Table(name = "orders_archive", indexes = {
+        @Index(name = "idx_orders_archive_user_created", columnList = "userId, createdAt")
+})
+public class ArchivedOrderEntity implements Persistable<Long> {
+
+    // Same id as the original order, so lookups by order id keep working
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 32)
+    private String status;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    @Column(nullable = false)
+    private Instant archivedAt;
+
+    @Column(nullable = false, length = 200)
+    private String street;
+
+    @Column(nullable = false, length = 100)
+    private String city;
+
+    @Column(nullable = false, length = 100)
+    private String state;
+
+    @Column(nullable = false, length = 20)
+    private String postalCode;
+
+    @Column(nullable = false, length = 100)
+    private String country;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String itemsJson;
+
+    // Total item quantity, kept alongside the JSON so rollup rebuilds need not parse it
+    @Column(nullable = false)
+    private int itemCount;
+
+    // Archived rows are always inserted with an assigned id; skip the merge select
+    @Transient
+    private boolean isNew = true;
+
+    public ArchivedOrderEntity() {
+    }
+
+    public static ArchivedOrderEntity fromOrder(OrderEntity order, String itemsJson, Instant archivedAt) {
+        ArchivedOrderEntity archived = new ArchivedOrderEntity();
+        archived.id = order.getId();
+        archived.userId = order.getUserId();
+        archived.status = order.getStatus();
+        archived.createdAt = order.getCreatedAt();
+        archived.updatedAt = order.getUpdatedAt();
+        archived.archivedAt = archivedAt;
+        archived.street = order.getStreet();
+        archived.city = order.getCity();
+        archived.state = order.getState();
+        archived.postalCode = order.getPostalCode();
+        archived.country = order.getCountry();
+        archived.itemsJson = itemsJson;
+        archived.itemCount = order.getItems().stream()
+                .mapToInt(OrderItemEntity::getQuantity)
+                .sum();
+        return archived;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Instant getArchivedAt() {
+        return archivedAt;
+    }
+
+    public String getStreet() { return street; }
+
+    public String getCity() { return city; }
+
+    public String getState() { return state; }
+
+    public String getPostalCode() { return postalCode; }
+
+    public String getCountry() { return country; }
+
+    public String getItemsJson() {
+        return itemsJson;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+}
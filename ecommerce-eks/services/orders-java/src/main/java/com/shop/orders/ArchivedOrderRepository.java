@@ -0,0 +1,19 @@
+package com.shop.orders;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrderEntity, Long> {
+
+    // Served by idx_orders_archive_user_created
+    List<ArchivedOrderEntity> findByUserIdOrderByCreatedAtDesc(Long userId);
+
+    List<ArchivedOrderEntity> findAllByOrderByCreatedAtDesc();
+
+    // Same shape as the hot table's version, so a user's tag can cover both tiers
+    @Query("select count(o) as count, max(o.updatedAt) as lastUpdated from ArchivedOrderEntity o where o.userId = :userId")
+    OrderRepository.OrderVersion findOrderVersionByUserId(@Param("userId") Long userId);
+}
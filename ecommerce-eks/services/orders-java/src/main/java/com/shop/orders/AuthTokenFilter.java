@@ -0,0 +1,95 @@
+package com.shop.orders;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies the Bearer token on /api/orders requests and exposes the caller's
+ * user id as a request attribute. With auth.token.enforce=false (the default
+ * while clients migrate to signed tokens) bad or missing tokens are only counted.
+ */
+@Component
+public class AuthTokenFilter extends OncePerRequestFilter {
+
+    public static final String USER_ID_ATTRIBUTE = "com.shop.orders.authUserId";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final AuthTokenVerifier verifier;
+    private final boolean enforce;
+    private final Timer verifyTimer;
+    private final Counter valid;
+    private final Counter invalid;
+    private final Counter missing;
+
+    public AuthTokenFilter(AuthTokenVerifier verifier,
+                           MeterRegistry meterRegistry,
+                           @Value("${auth.token.enforce:false}") boolean enforce) {
+        this.verifier = verifier;
+        this.enforce = enforce;
+        // Per-request verification cost, visible next to http.server.requests
+        this.verifyTimer = Timer.builder("orders.auth.token.verify.time")
+                .register(meterRegistry);
+        this.valid = counter(meterRegistry, "valid");
+        this.invalid = counter(meterRegistry, "invalid");
+        this.missing = counter(meterRegistry, "missing");
+    }
+
+    private static Counter counter(MeterRegistry registry, String outcome) {
+        return Counter.builder("orders.auth.token.verifications")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return "OPTIONS".equals(request.getMethod())
+                || !path.startsWith("/api/orders")
+                || path.endsWith("/health");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.startsWith(BEARER_PREFIX)) {
+            missing.increment();
+            if (enforce) {
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Missing bearer token");
+                return;
+            }
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        long userId = verifier.verify(header.substring(BEARER_PREFIX.length()));
+        verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (userId == AuthTokenVerifier.INVALID) {
+            invalid.increment();
+            if (enforce) {
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired token");
+                return;
+            }
+        } else {
+            valid.increment();
+            request.setAttribute(USER_ID_ATTRIBUTE, userId);
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,100 @@
+package com.shop.orders;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Verifies tokens issued by users-service without calling it. Token layout:
+ * {@code <keyId>.<base64url(userId, issuedAt, expiresAt)>.<base64url(HMAC-SHA256)>}.
+ * Keys come from configuration; Mac instances are cached per thread and key.
+ */
+@Component
+public class AuthTokenVerifier {
+
+    public static final long INVALID = -1;
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int PAYLOAD_BYTES = Long.BYTES * 3;
+
+    private final Map<String, ThreadLocal<Mac>> macs = new HashMap<>();
+
+    public AuthTokenVerifier(@Value("${auth.token.keys:}") String keys) {
+        // There is deliberately no built-in key: a committed one would let anyone mint tokens
+        if (keys.isBlank()) {
+            throw new IllegalStateException("auth.token.keys is not set (AUTH_TOKEN_KEYS, or run with the dev profile)");
+        }
+        // keys are "keyId:base64Secret" pairs separated by commas
+        for (String entry : keys.split(",")) {
+            String[] parts = entry.trim().split(":", 2);
+            if (parts.length != 2) {
+                throw new IllegalStateException("auth.token.keys entries must be keyId:base64Secret");
+            }
+            SecretKeySpec key = new SecretKeySpec(Base64.getDecoder().decode(parts[1]), ALGORITHM);
+            macs.put(parts[0], ThreadLocal.withInitial(() -> newMac(key)));
+        }
+    }
+
+    /**
+     * Returns the token's user id, or {@link #INVALID} if it is malformed,
+     * signed with an unknown key, forged or expired.
+     */
+    public long verify(String token) {
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot <= 0 || lastDot <= firstDot + 1 || lastDot == token.length() - 1) {
+            return INVALID;
+        }
+
+        ThreadLocal<Mac> cachedMac = macs.get(token.substring(0, firstDot));
+        if (cachedMac == null) {
+            return INVALID;
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = Base64.getUrlDecoder().decode(token.substring(firstDot + 1, lastDot));
+            signature = Base64.getUrlDecoder().decode(token.substring(lastDot + 1));
+        } catch (IllegalArgumentException ex) {
+            return INVALID;
+        }
+        if (payload.length != PAYLOAD_BYTES) {
+            return INVALID;
+        }
+
+        Mac mac = cachedMac.get();
+        byte[] signed = token.substring(0, lastDot).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(mac.doFinal(signed), signature)) {
+            return INVALID;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long userId = buffer.getLong();
+        buffer.getLong(); // issuedAt
+        long expiresAt = buffer.getLong();
+        if (System.currentTimeMillis() / 1000 >= expiresAt) {
+            return INVALID;
+        }
+        return userId;
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 not available", ex);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.shop.orders;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conditional GET with weak ETags. Tomcat skips gzip for responses that carry a
+ * strong ETag, and JSON and CBOR bodies of one version must not share a validator,
+ * so the tag is {@code W/"<version>-<json|cbor>"} and the response varies on Accept.
+ */
+final class ConditionalGet {
+
+    // The Jackson representations, in the order Spring MVC prefers them for */*
+    private static final List<MediaType> REPRESENTATIONS =
+            List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR);
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Sets ETag (and Vary: Accept) for {@code version} and returns true if the client's
+     * copy is current, in which case a 304 has been prepared and the body must be skipped.
+     */
+    static boolean checkNotModified(ServletWebRequest request, String version) {
+        HttpServletResponse response = request.getResponse();
+        if (response != null && !response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        MediaType type = negotiate(request.getHeader(HttpHeaders.ACCEPT));
+        return request.checkNotModified("W/\"" + version + "-" + type.getSubtype() + "\"");
+    }
+
+    // Same choice Spring MVC makes when writing the body: most specific, highest quality first
+    static MediaType negotiate(String accept) {
+        List<MediaType> accepted;
+        try {
+            accepted = accept == null || accept.isBlank()
+                    ? new ArrayList<>(List.of(MediaType.ALL))
+                    : new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException ex) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType candidate : accepted) {
+            for (MediaType representation : REPRESENTATIONS) {
+                if (candidate.isCompatibleWith(representation)) {
+                    return representation;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+}
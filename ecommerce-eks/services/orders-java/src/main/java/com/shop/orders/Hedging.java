@@ -0,0 +1,166 @@
+package com.shop.orders;
+
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for idempotent reads: if the first attempt has not answered within
+ * the recent latency percentile (clamped to [minDelay, maxDelay]), a second attempt is
+ * sent and whichever succeeds first wins. Only one extra request is ever sent.
+ */
+public class Hedging {
+
+    // Below this many samples the percentile is noise; hedge at maxDelay instead
+    private static final long MIN_SAMPLES = 20;
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Executor executor;
+    private final ContextSnapshotFactory snapshots = ContextSnapshotFactory.builder().build();
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final Timer latency;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+
+    private volatile long delayNanos;
+    private final AtomicLong refreshedAt = new AtomicLong(System.nanoTime());
+
+    public Hedging(String client, Executor executor, double percentile,
+                   Duration minDelay, Duration maxDelay, MeterRegistry registry) {
+        this.executor = executor;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.delayNanos = maxDelayNanos;
+        this.latency = Timer.builder("orders.client.hedge.latency")
+                .tag("client", client)
+                .publishPercentiles(percentile)
+                .distributionStatisticExpiry(Duration.ofMinutes(1))
+                .register(registry);
+        this.hedgesSent = Counter.builder("orders.client.hedge.requests")
+                .tag("client", client)
+                .tag("outcome", "sent")
+                .register(registry);
+        this.hedgesWon = Counter.builder("orders.client.hedge.requests")
+                .tag("client", client)
+                .tag("outcome", "won")
+                .register(registry);
+    }
+
+    public <T> T call(Supplier<T> work) {
+        CompletableFuture<T> primary;
+        try {
+            primary = submit(work);
+        } catch (RejectedExecutionException ex) {
+            // Pool exhausted: don't make things worse, just call inline
+            return work.get();
+        }
+
+        try {
+            return primary.get(currentDelayNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            // fall through and hedge
+        } catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for downstream call", ex);
+        }
+
+        CompletableFuture<T> backup;
+        try {
+            backup = submit(work);
+        } catch (RejectedExecutionException ex) {
+            return join(primary);
+        }
+        hedgesSent.increment();
+
+        // First success wins; fail only when both attempts failed
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primary.whenComplete((value, error) -> settle(winner, failures, value, error, false));
+        backup.whenComplete((value, error) -> settle(winner, failures, value, error, true));
+
+        try {
+            return join(winner);
+        } finally {
+            primary.cancel(true);
+            backup.cancel(true);
+        }
+    }
+
+    private <T> void settle(CompletableFuture<T> winner, AtomicInteger failures,
+                            T value, Throwable error, boolean isBackup) {
+        if (error == null) {
+            if (winner.complete(value) && isBackup) {
+                hedgesWon.increment();
+            }
+        } else if (failures.incrementAndGet() == 2) {
+            winner.completeExceptionally(error);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        var snapshot = snapshots.captureAll();
+        return CompletableFuture.supplyAsync(() -> {
+            try (var scope = snapshot.setThreadLocals()) {
+                long start = System.nanoTime();
+                T value = work.get();
+                latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return value;
+            }
+        }, executor);
+    }
+
+    // Re-reads the percentile at most once per second
+    private long currentDelayNanos() {
+        long now = System.nanoTime();
+        long last = refreshedAt.get();
+        if (now - last > REFRESH_NANOS && refreshedAt.compareAndSet(last, now)) {
+            var snapshot = latency.takeSnapshot();
+            ValueAtPercentile[] percentiles = snapshot.percentileValues();
+            if (snapshot.count() >= MIN_SAMPLES && percentiles.length > 0) {
+                long p = (long) percentiles[0].value(TimeUnit.NANOSECONDS);
+                delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, p));
+            } else {
+                delayNanos = maxDelayNanos;
+            }
+        }
+        return delayNanos;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            throw unwrap(ex.getCause());
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof CompletionException nested && nested.getCause() != null) {
+            cause = nested.getCause();
+        }
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+}
@@ -1,26 +1,109 @@
 package com.shop.orders;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Component
 public class InventoryClient {
 
     private final RestTemplate restTemplate;
     private final String baseUrl;
+    private final SingleFlight<String, Integer> stockReads;
+    private final SingleFlight<String, Integer> staleStockReads;
+    private final ThreadPoolExecutor readExecutor;
+    private final Hedging hedging;
+    private final StaleWhileRevalidateCache<String, Integer> stockCache;
 
     public InventoryClient(RestTemplateBuilder builder,
-                           @Value("${inventory.base-url:http://inventory:8000}") String baseUrl) {
-        this.restTemplate = builder.build();
+                           @Value("${inventory.base-url:http://inventory:8000}") String baseUrl,
+                           @Value("${clients.wire-format:json}") String wireFormat,
+                           @Value("${clients.single-flight.window-ms:0}") long singleFlightWindowMs,
+                           @Value("${inventory.hedge.enabled:true}") boolean hedgeEnabled,
+                           @Value("${inventory.hedge.percentile:0.95}") double hedgePercentile,
+                           @Value("${inventory.hedge.min-delay-ms:10}") long hedgeMinDelayMs,
+                           @Value("${inventory.hedge.max-delay-ms:200}") long hedgeMaxDelayMs,
+                           @Value("${inventory.swr.fresh-ms:250}") long swrFreshMs,
+                           @Value("${inventory.swr.stale-ms:2000}") long swrStaleMs,
+                           @Value("${inventory.read-pool.max-threads:32}") int readPoolMaxThreads,
+                           MeterRegistry meterRegistry) {
+        this.restTemplate = WireFormat.from(wireFormat).apply(builder).build();
         this.baseUrl = baseUrl;
+        // Authoritative reads only share a call still in flight; the reuse window is a form of
+        // staleness, so it applies to bounded-staleness reads alone
+        this.stockReads = new SingleFlight<>("inventory", Duration.ZERO, meterRegistry);
+        this.staleStockReads = singleFlightWindowMs > 0
+                ? new SingleFlight<>("inventory-stale", Duration.ofMillis(singleFlightWindowMs), meterRegistry)
+                : stockReads;
+
+        // Hedged attempts and background revalidation share one bounded pool;
+        // when it is full, hedges are skipped rather than queued
+        AtomicInteger threadIds = new AtomicInteger();
+        this.readExecutor = new ThreadPoolExecutor(0, readPoolMaxThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread t = new Thread(r, "inventory-read-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.hedging = hedgeEnabled
+                ? new Hedging("inventory", readExecutor, hedgePercentile,
+                        Duration.ofMillis(hedgeMinDelayMs), Duration.ofMillis(hedgeMaxDelayMs), meterRegistry)
+                : null;
+        this.stockCache = swrStaleMs > 0
+                ? new StaleWhileRevalidateCache<>("inventory", readExecutor,
+                        Duration.ofMillis(swrFreshMs), Duration.ofMillis(swrStaleMs), meterRegistry)
+                : null;
     }
 
     public record InventoryResponse(String productId, int quantity) {}
 
+    /**
+     * How a single stock read may be served. {@code hedged} allows a second request when
+     * the first is slow; {@code allowStale} allows a cached value within the SWR window.
+     */
+    public record ReadOptions(boolean hedged, boolean allowStale) {
+        /** Always hits inventory; use before mutating stock. */
+        public static final ReadOptions AUTHORITATIVE = new ReadOptions(true, false);
+        /** Early availability checks that a later authoritative read re-validates. */
+        public static final ReadOptions BOUNDED_STALENESS = new ReadOptions(true, true);
+    }
+
     public int getStock(String productId) {
+        return getStock(productId, ReadOptions.AUTHORITATIVE);
+    }
+
+    public int getStock(String productId, ReadOptions options) {
+        if (options.allowStale() && stockCache != null) {
+            return stockCache.get(productId, () -> readStock(productId, options));
+        }
+        return readStock(productId, options);
+    }
+
+    private int readStock(String productId, ReadOptions options) {
+        boolean hedged = options.hedged();
+        // Concurrent orders for the same product share one inventory call
+        var flights = options.allowStale() ? staleStockReads : stockReads;
+        int quantity = flights.execute(productId, () -> hedged && hedging != null
+                ? hedging.call(() -> fetchStock(productId))
+                : fetchStock(productId));
+        if (stockCache != null) {
+            stockCache.put(productId, quantity);
+        }
+        return quantity;
+    }
+
+    private int fetchStock(String productId) {
         try {
             InventoryResponse resp = restTemplate.getForObject(
                     baseUrl + "/api/inventory/{productId}",
@@ -33,16 +116,55 @@ public class InventoryClient {
         }
     }
 
-    public void setStock(String productId, int newQuantity) {
+    /**
+     * Atomically takes {@code quantity} units for an order saga. Idempotent per
+     * (sagaId, productId); fails with IllegalStateException if stock is insufficient.
+     */
+    public int reserve(long sagaId, String productId, int quantity) {
+        return adjust(productId, -quantity, reservationKey(sagaId, productId), null, "reserve");
+    }
+
+    /**
+     * Compensates {@link #reserve}. Safe to retry, and safe to call when the reserve
+     * never landed: inventory then fences off the reserve instead of adding stock.
+     */
+    public int release(long sagaId, String productId, int quantity) {
+        return adjust(productId, quantity, "order-saga-" + sagaId + "-release-" + productId,
+                reservationKey(sagaId, productId), "release");
+    }
+
+    private static String reservationKey(long sagaId, String productId) {
+        return "order-saga-" + sagaId + "-reserve-" + productId;
+    }
+
+    private int adjust(String productId, int delta, String idempotencyKey, String undoes, String operation) {
+        var body = new java.util.HashMap<String, Object>();
+        body.put("delta", delta);
+        body.put("idempotencyKey", idempotencyKey);
+        if (undoes != null) {
+            body.put("undoes", undoes);
+        }
         try {
-            var body = java.util.Map.of("quantity", newQuantity);
-            restTemplate.put(
-                    baseUrl + "/api/inventory/{productId}",
+            InventoryResponse resp = restTemplate.postForObject(
+                    baseUrl + "/api/inventory/{productId}/adjust",
                     body,
+                    InventoryResponse.class,
                     productId
             );
+            int quantity = resp != null ? resp.quantity() : 0;
+            if (stockCache != null) {
+                stockCache.put(productId, quantity);
+            }
+            return quantity;
+        } catch (HttpClientErrorException.Conflict ex) {
+            throw new IllegalStateException("Insufficient stock for product " + productId);
         } catch (RestClientException ex) {
-            throw new RuntimeException("Failed to call inventory service (setStock)", ex);
+            throw new RuntimeException("Failed to call inventory service (" + operation + ")", ex);
         }
     }
-}
\ No newline at end of file
+
+    @PreDestroy
+    void shutdown() {
+        readExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,130 @@
+package com.shop.orders;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for /api/orders. Each request is classified by {@link RequestPriority}
+ * and must get a permit from the {@link AdmissionGate} before it reaches the controller.
+ * While the gate reports a standing queue, BULK requests are rejected immediately and
+ * other classes only queue for the CoDel target. Rejections are fast 503s with a
+ * Retry-After header, so they hold neither a DB connection nor a thread for long.
+ * Runs ahead of token verification so shed requests cost as little as possible.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final AdmissionGate gate;
+    private final long targetNanos;
+    private final Map<RequestPriority, Long> maxWaitNanos = new EnumMap<>(RequestPriority.class);
+    private final String retryAfterSeconds;
+    private final Map<RequestPriority, Counter> admitted = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, Counter> shed = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, Timer> queueDelay = new EnumMap<>(RequestPriority.class);
+
+    public LoadSheddingFilter(MeterRegistry meterRegistry,
+                              @Value("${orders.admission.enabled:true}") boolean enabled,
+                              @Value("${orders.admission.max-concurrent:50}") int maxConcurrent,
+                              @Value("${orders.admission.normal-share:0.8}") double normalShare,
+                              @Value("${orders.admission.bulk-share:0.4}") double bulkShare,
+                              @Value("${orders.admission.target-delay-ms:20}") long targetDelayMs,
+                              @Value("${orders.admission.interval-ms:100}") long intervalMs,
+                              @Value("${orders.admission.critical-max-wait-ms:1000}") long criticalMaxWaitMs,
+                              @Value("${orders.admission.normal-max-wait-ms:200}") long normalMaxWaitMs,
+                              @Value("${orders.admission.bulk-max-wait-ms:50}") long bulkMaxWaitMs,
+                              @Value("${orders.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.enabled = enabled;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetDelayMs);
+        this.gate = new AdmissionGate(maxConcurrent, normalShare, bulkShare,
+                targetNanos, TimeUnit.MILLISECONDS.toNanos(intervalMs));
+        this.retryAfterSeconds = Integer.toString(retryAfterSeconds);
+        maxWaitNanos.put(RequestPriority.CRITICAL, TimeUnit.MILLISECONDS.toNanos(criticalMaxWaitMs));
+        maxWaitNanos.put(RequestPriority.NORMAL, TimeUnit.MILLISECONDS.toNanos(normalMaxWaitMs));
+        maxWaitNanos.put(RequestPriority.BULK, TimeUnit.MILLISECONDS.toNanos(bulkMaxWaitMs));
+
+        for (RequestPriority priority : RequestPriority.values()) {
+            String tag = priority.name().toLowerCase();
+            admitted.put(priority, Counter.builder("orders.admission.requests")
+                    .tag("priority", tag)
+                    .tag("outcome", "admitted")
+                    .register(meterRegistry));
+            shed.put(priority, Counter.builder("orders.admission.requests")
+                    .tag("priority", tag)
+                    .tag("outcome", "shed")
+                    .register(meterRegistry));
+            queueDelay.put(priority, Timer.builder("orders.admission.queue.delay")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("orders.admission.in.flight", gate, AdmissionGate::inFlight)
+                .register(meterRegistry);
+        Gauge.builder("orders.admission.overloaded", gate, g -> g.isOverloaded() ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !enabled
+                || "OPTIONS".equals(request.getMethod())
+                || !path.startsWith("/api/orders")
+                || path.endsWith("/health");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        RequestPriority priority = RequestPriority.classify(request);
+
+        long maxWait = maxWaitNanos.get(priority);
+        if (gate.isOverloaded()) {
+            if (priority == RequestPriority.BULK) {
+                reject(priority, response);
+                return;
+            }
+            maxWait = Math.min(maxWait, targetNanos);
+        }
+
+        long delay = gate.acquire(priority, maxWait);
+        if (delay < 0) {
+            reject(priority, response);
+            return;
+        }
+        admitted.get(priority).increment();
+        queueDelay.get(priority).record(delay, TimeUnit.NANOSECONDS);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            gate.release();
+        }
+    }
+
+    private void reject(RequestPriority priority, HttpServletResponse response) throws IOException {
+        shed.get(priority).increment();
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"overloaded\",\"priority\":\"" + priority.name() + "\"}");
+    }
+}
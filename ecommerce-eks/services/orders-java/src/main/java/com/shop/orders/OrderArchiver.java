@@ -0,0 +1,182 @@
+package com.shop.orders;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static com.shop.orders.OrderDtos.OrderItemResponse;
+
+/**
+ * Keeps the hot orders/order_items tables bounded by moving orders older than the
+ * retention window into orders_archive, and serves lookups that miss the hot tables.
+ */
+@Component
+public class OrderArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderArchiver.class);
+    private static final TypeReference<List<OrderItemResponse>> ITEMS_TYPE = new TypeReference<>() {};
+
+    private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final OrderShards orderShards;
+    private final boolean enabled;
+    private final Duration retention;
+    private final int batchSize;
+    private final Counter archivedOrders;
+    private final Counter archiveLookups;
+
+    public OrderArchiver(OrderRepository orderRepository,
+                         ArchivedOrderRepository archivedOrderRepository,
+                         TransactionTemplate transactionTemplate,
+                         ObjectMapper objectMapper,
+                         OrderShards orderShards,
+                         MeterRegistry meterRegistry,
+                         @Value("${orders.archive.enabled:true}") boolean enabled,
+                         @Value("${orders.archive.retention-days:90}") int retentionDays,
+                         @Value("${orders.archive.batch-size:500}") int batchSize) {
+        this.orderRepository = orderRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.orderShards = orderShards;
+        this.enabled = enabled;
+        this.retention = Duration.ofDays(retentionDays);
+        this.batchSize = batchSize;
+        this.archivedOrders = Counter.builder("orders.archive.moved")
+                .description("Orders moved from the hot tables to orders_archive")
+                .register(meterRegistry);
+        this.archiveLookups = Counter.builder("orders.archive.lookups")
+                .description("Order lookups served from orders_archive")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${orders.archive.interval-ms:3600000}",
+            initialDelayString = "${orders.archive.initial-delay-ms:60000}")
+    public void archiveOldOrders() {
+        if (!enabled) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(retention);
+        // Each shard archives into its own orders_archive
+        orderShards.forEach(shard -> {
+            logger.info("Archiving orders created before {} shard={}", cutoff, shard);
+
+            int total = 0;
+            int moved;
+            do {
+                // One transaction per batch keeps locks and undo log small
+                moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+                total += moved;
+            } while (moved == batchSize);
+
+            logger.info("Archived {} orders created before {} shard={}", total, cutoff, shard);
+        });
+    }
+
+    private int archiveBatch(Instant cutoff) {
+        List<Long> ids = orderRepository.findIdsCreatedBefore(cutoff, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        // Rows locked by another replica's archiver are skipped, not waited on
+        List<OrderEntity> orders = orderRepository.findWithItemsByIdIn(ids);
+        if (orders.isEmpty()) {
+            return 0;
+        }
+
+        Instant now = Instant.now();
+        List<ArchivedOrderEntity> archived = orders.stream()
+                .map(order -> ArchivedOrderEntity.fromOrder(order, encodeItems(order), now))
+                .toList();
+        archivedOrderRepository.saveAll(archived);
+
+        List<Long> movedIds = orders.stream().map(OrderEntity::getId).toList();
+        orderRepository.deleteItemsByOrderIdIn(movedIds);
+        orderRepository.deleteByIdIn(movedIds);
+
+        archivedOrders.increment(movedIds.size());
+        logger.debug("Archived batch of {} orders", movedIds.size());
+        return movedIds.size();
+    }
+
+    // Caller selects the shard (see OrderService.getOrder)
+    public Optional<OrderEntity> findArchived(Long id) {
+        return archivedOrderRepository.findById(id)
+                .map(archived -> {
+                    archiveLookups.increment();
+                    return toOrderEntity(archived);
+                });
+    }
+
+    // Caller selects the shard; newest first, like the hot table's history query
+    public List<OrderEntity> findArchivedByUserId(Long userId) {
+        List<ArchivedOrderEntity> archived = archivedOrderRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        if (!archived.isEmpty()) {
+            archiveLookups.increment();
+        }
+        return archived.stream().map(this::toOrderEntity).toList();
+    }
+
+    // Caller selects the shard; a full scan of the cold tier, for the opt-in listing only
+    public List<OrderEntity> findAllArchived() {
+        archiveLookups.increment();
+        return archivedOrderRepository.findAllByOrderByCreatedAtDesc().stream()
+                .map(this::toOrderEntity)
+                .toList();
+    }
+
+    public OrderRepository.OrderVersion findArchivedVersion(Long userId) {
+        return archivedOrderRepository.findOrderVersionByUserId(userId);
+    }
+
+    private String encodeItems(OrderEntity order) {
+        List<OrderItemResponse> items = order.getItems().stream()
+                .map(OrderItemResponse::fromEntity)
+                .toList();
+        try {
+            return objectMapper.writeValueAsString(items);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to encode items for orderId=" + order.getId(), ex);
+        }
+    }
+
+    private OrderEntity toOrderEntity(ArchivedOrderEntity archived) {
+        OrderEntity order = new OrderEntity(
+                archived.getUserId(),
+                archived.getStatus(),
+                archived.getCreatedAt(),
+                archived.getUpdatedAt()
+        );
+        order.setId(archived.getId());
+        order.setStreet(archived.getStreet());
+        order.setCity(archived.getCity());
+        order.setState(archived.getState());
+        order.setPostalCode(archived.getPostalCode());
+        order.setCountry(archived.getCountry());
+
+        try {
+            for (OrderItemResponse item : objectMapper.readValue(archived.getItemsJson(), ITEMS_TYPE)) {
+                order.addItem(new OrderItemEntity(item.productId(), item.quantity()));
+            }
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to decode archived items for orderId=" + archived.getId(), ex);
+        }
+        return order;
+    }
+}
@@ -0,0 +1,28 @@
+package com.shop.orders;
+
+import java.time.Instant;
+
+/**
+ * Published by OrderService once an order is persisted; listeners that must only
+ * see committed orders use @TransactionalEventListener(AFTER_COMMIT).
+ */
+public record OrderCreatedEvent(
+        Long orderId,
+        Long userId,
+        String status,
+        Instant createdAt,
+        int itemCount
+) {
+    public static OrderCreatedEvent fromEntity(OrderEntity order) {
+        int itemCount = order.getItems().stream()
+                .mapToInt(OrderItemEntity::getQuantity)
+                .sum();
+        return new OrderCreatedEvent(
+                order.getId(),
+                order.getUserId(),
+                order.getStatus(),
+                order.getCreatedAt(),
+                itemCount
+        );
+    }
+}
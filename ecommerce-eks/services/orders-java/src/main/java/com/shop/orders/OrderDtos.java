@@ -79,4 +79,61 @@ public class OrderDtos {
                 String country
         ) {}
     }
+
+    public record OrderRollupResponse(
+            String granularity,
+            Instant bucketStart,
+            String status,
+            long orderCount,
+            long itemCount
+    ) {
+        public static OrderRollupResponse fromEntity(OrderRollupEntity entity) {
+            return new OrderRollupResponse(
+                    entity.getGranularity().name(),
+                    entity.getBucketStart(),
+                    entity.getStatus(),
+                    entity.getOrderCount(),
+                    entity.getItemCount()
+            );
+        }
+
+        // Combines the same bucket's counts from two shards
+        public OrderRollupResponse plus(OrderRollupResponse other) {
+            return new OrderRollupResponse(
+                    granularity,
+                    bucketStart,
+                    status,
+                    orderCount + other.orderCount,
+                    itemCount + other.itemCount
+            );
+        }
+    }
+
+    public record UserOrderSummaryResponse(
+            Long userId,
+            long orderCount,
+            long itemCount,
+            Instant lastOrderAt
+    ) {
+        public static UserOrderSummaryResponse fromEntity(UserOrderSummaryEntity entity) {
+            return new UserOrderSummaryResponse(
+                    entity.getUserId(),
+                    entity.getOrderCount(),
+                    entity.getItemCount(),
+                    entity.getLastOrderAt()
+            );
+        }
+
+        public static UserOrderSummaryResponse empty(Long userId) {
+            return new UserOrderSummaryResponse(userId, 0, 0, null);
+        }
+
+        public UserOrderSummaryResponse plus(UserOrderSummaryResponse other) {
+            Instant latest = lastOrderAt == null || (other.lastOrderAt != null && other.lastOrderAt.isAfter(lastOrderAt))
+                    ? other.lastOrderAt
+                    : lastOrderAt;
+            return new UserOrderSummaryResponse(userId, orderCount + other.orderCount,
+                    itemCount + other.itemCount, latest);
+        }
+    }
 }
\ No newline at end of file
@@ -7,7 +7,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_user_created", columnList = "userId, createdAt"),
+        @Index(name = "idx_orders_created", columnList = "createdAt")
+})
 public class OrderEntity {
 
     @Id
@@ -0,0 +1,476 @@
+package com.shop.orders;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * Local append-only journal of {@link OrderJournalEvent}s, so analytics and notifications
+ * can replay order history without querying MySQL.
+ *
+ * <p>Records go into memory-mapped segment files of a fixed size. Each record is framed as
+ * {@code [int length][int crc32c][payload]}, and a length of -1 marks the end of a segment.
+ * Offsets are global byte positions, and each segment file is named after the offset of
+ * its first record. A flusher thread fsyncs dirty ranges at most once per flush interval
+ * (group commit), so one fsync covers every append in that window.
+ */
+@Component
+public class OrderJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+
+    static final int HEADER_SIZE = 8;
+    private static final int END_OF_SEGMENT = -1;
+    private static final String SUFFIX = ".seg";
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        /** {@code payload} is a read-only view of the mapped segment; nothing is copied. */
+        void onRecord(long offset, ByteBuffer payload);
+    }
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentSize;
+    private final long flushIntervalNanos;
+    private final int retainedSegments;
+    private final boolean awaitDurable;
+    private final long awaitTimeoutNanos;
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Object durableLock = new Object();
+    private final ThreadLocal<CRC32C> crcs = ThreadLocal.withInitial(CRC32C::new);
+
+    // Writer state, guarded by this
+    private Segment active;
+    private long appendCount;
+
+    // Everything below endOffset is fully written; everything below durableOffset is fsynced
+    private volatile long endOffset;
+    private volatile long durableOffset;
+    private volatile boolean running;
+    private Thread flusher;
+    private long flushedCount;
+
+    private final Counter appends;
+    private final Counter appendFailures;
+    private final DistributionSummary groupSize;
+    private final Timer flushTime;
+
+    public OrderJournal(@Value("${orders.journal.enabled:false}") boolean enabled,
+                        @Value("${orders.journal.dir:${java.io.tmpdir}/orders-journal}") String dir,
+                        @Value("${orders.journal.segment-size-mb:64}") int segmentSizeMb,
+                        @Value("${orders.journal.flush-interval-ms:5}") long flushIntervalMs,
+                        @Value("${orders.journal.retained-segments:16}") int retainedSegments,
+                        @Value("${orders.journal.await-durable:false}") boolean awaitDurable,
+                        @Value("${orders.journal.await-timeout-ms:1000}") long awaitTimeoutMs,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.retainedSegments = retainedSegments;
+        this.awaitDurable = awaitDurable;
+        this.awaitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(awaitTimeoutMs);
+        this.appends = Counter.builder("orders.journal.appends")
+                .register(meterRegistry);
+        this.appendFailures = Counter.builder("orders.journal.append.failures")
+                .register(meterRegistry);
+        this.groupSize = DistributionSummary.builder("orders.journal.flush.records")
+                .description("Records made durable by one fsync")
+                .register(meterRegistry);
+        this.flushTime = Timer.builder("orders.journal.flush.time")
+                .register(meterRegistry);
+        Gauge.builder("orders.journal.end.offset", this, j -> j.endOffset)
+                .register(meterRegistry);
+        Gauge.builder("orders.journal.unflushed.bytes", this, j -> j.endOffset - j.durableOffset)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (var stream = Files.list(dir)) {
+            files = stream.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            segments.put(base, Segment.open(file, base, segmentSize));
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(0);
+        } else {
+            active = segments.lastEntry().getValue();
+            int damaged = active.recover();
+            if (damaged > 0) {
+                logger.warn("Order journal segment base={} has {} damaged record(s) before its end",
+                        active.base, damaged);
+            }
+        }
+        endOffset = active.base + active.position;
+        durableOffset = endOffset;
+        logger.info("Order journal opened dir={} segments={} endOffset={}", dir, segments.size(), endOffset);
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "order-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(awaitTimeoutNanos));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long endOffset() {
+        return endOffset;
+    }
+
+    public long firstOffset() {
+        var first = segments.firstEntry();
+        return first != null ? first.getKey() : 0;
+    }
+
+    /**
+     * Appends an event and returns its offset, or -1 when the journal is disabled or the
+     * append failed. Journal problems are logged and counted but never fail the order.
+     * With await-durable set, a CONFIRMED event returns once the group commit covering it has
+     * run; the intermediate saga transitions never wait, since the saga row is the source of truth.
+     */
+    public long append(OrderJournalEvent event) {
+        if (!enabled) {
+            return -1;
+        }
+        long offset;
+        long end;
+        try {
+            synchronized (this) {
+                int recordSize = HEADER_SIZE + OrderJournalEvent.SIZE;
+                // Leave room for the end-of-segment marker
+                if (active.position + recordSize > segmentSize - Integer.BYTES) {
+                    roll();
+                }
+                int pos = active.position;
+                MappedByteBuffer buffer = active.buffer;
+                event.encodeTo(buffer.slice(pos + HEADER_SIZE, OrderJournalEvent.SIZE));
+
+                CRC32C crc = crcs.get();
+                crc.reset();
+                crc.update(buffer.slice(pos + HEADER_SIZE, OrderJournalEvent.SIZE));
+                buffer.putInt(pos + Integer.BYTES, (int) crc.getValue());
+                // Length last: a non-zero length means the record behind it is complete
+                buffer.putInt(pos, OrderJournalEvent.SIZE);
+
+                active.position = pos + recordSize;
+                offset = active.base + pos;
+                end = active.base + active.position;
+                appendCount++;
+                endOffset = end;
+            }
+        } catch (IOException | RuntimeException ex) {
+            appendFailures.increment();
+            logger.error("Order journal append failed type={} sagaId={}", event.type(), event.sagaId(), ex);
+            return -1;
+        }
+        appends.increment();
+        if (awaitDurable && event.type() == OrderJournalEvent.Type.CONFIRMED) {
+            awaitDurable(end);
+        }
+        return offset;
+    }
+
+    // Caller holds the writer lock
+    private void roll() throws IOException {
+        active.buffer.putInt(active.position, END_OF_SEGMENT);
+        long nextBase = active.base + active.position;
+        // Register the new segment before endOffset can move into it
+        active = createSegment(nextBase);
+
+        while (retainedSegments > 0 && segments.size() > retainedSegments) {
+            Map.Entry<Long, Segment> oldest = segments.firstEntry();
+            // Never drop data that has not been fsynced yet
+            if (oldest.getKey() + segmentSize > durableOffset) {
+                break;
+            }
+            segments.remove(oldest.getKey());
+            Files.deleteIfExists(oldest.getValue().path);
+            logger.info("Order journal dropped segment base={}", oldest.getKey());
+        }
+    }
+
+    private Segment createSegment(long base) throws IOException {
+        Path path = dir.resolve(String.format("%020d%s", base, SUFFIX));
+        Segment segment = Segment.open(path, base, segmentSize);
+        segments.put(base, segment);
+        return segment;
+    }
+
+    private void awaitDurable(long offset) {
+        if (durableOffset >= offset) {
+            return;
+        }
+        long deadline = System.nanoTime() + awaitTimeoutNanos;
+        synchronized (durableLock) {
+            while (durableOffset < offset) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    logger.warn("Timed out waiting for order journal fsync offset={}", offset);
+                    return;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(durableLock, remaining);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            LockSupport.parkNanos(flushIntervalNanos);
+            try {
+                flush();
+            } catch (RuntimeException ex) {
+                logger.error("Order journal flush failed", ex);
+            }
+        }
+    }
+
+    private void flush() {
+        long target;
+        long count;
+        synchronized (this) {
+            target = endOffset;
+            count = appendCount;
+        }
+        long from = durableOffset;
+        if (target <= from) {
+            return;
+        }
+        long start = System.nanoTime();
+        Long firstDirty = segments.floorKey(from);
+        // Covers the tail of a just-rolled segment as well as the active one
+        for (Segment segment : segments.subMap(firstDirty != null ? firstDirty : 0L, true, target, false).values()) {
+            int lo = (int) Math.max(0, from - segment.base);
+            int hi = (int) Math.min(segmentSize, target - segment.base);
+            if (hi > lo) {
+                segment.buffer.force(lo, hi - lo);
+            }
+        }
+        flushTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        groupSize.record(count - flushedCount);
+        flushedCount = count;
+
+        synchronized (durableLock) {
+            durableOffset = target;
+            durableLock.notifyAll();
+        }
+    }
+
+    /**
+     * Starts reading at {@code fromOffset}, which must be a record boundary returned by append
+     * or a tailer. Anything else is rejected with IllegalArgumentException, so a bad offset
+     * can never be read as a frame.
+     */
+    public Tailer tail(long fromOffset) {
+        if (!enabled) {
+            throw new IllegalStateException("Order journal is disabled");
+        }
+        long end = endOffset;
+        Map.Entry<Long, Segment> entry = segments.floorEntry(fromOffset);
+        if (fromOffset >= 0 && (fromOffset < firstOffset() || entry == null)) {
+            throw new NotRetainedException(fromOffset);
+        }
+        if (fromOffset < 0 || fromOffset > end) {
+            throw new IllegalArgumentException("Offset " + fromOffset + " is outside the journal ["
+                    + firstOffset() + ", " + end + "]");
+        }
+        // Walk the segment's length prefixes up to the offset; records below end are complete
+        Segment segment = entry.getValue();
+        int target = (int) (fromOffset - segment.base);
+        int pos = 0;
+        while (pos < target) {
+            int length = segment.buffer.getInt(pos);
+            if (length <= 0 || pos + HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            pos += HEADER_SIZE + length;
+        }
+        if (pos != target) {
+            throw new IllegalArgumentException("Offset " + fromOffset + " is not a record boundary");
+        }
+        return new Tailer(fromOffset);
+    }
+
+    /**
+     * Length of the complete, checksum-valid record at {@code pos}, or -1 if there is none
+     * (end of data, end-of-segment marker, torn write or corruption).
+     */
+    static int validRecordLength(ByteBuffer buffer, int pos, CRC32C crc) {
+        int capacity = buffer.capacity();
+        if (pos + HEADER_SIZE > capacity) {
+            return -1;
+        }
+        int length = buffer.getInt(pos);
+        if (length <= 0 || pos + HEADER_SIZE + length > capacity) {
+            return -1;
+        }
+        crc.reset();
+        crc.update(buffer.slice(pos + HEADER_SIZE, length));
+        return (int) crc.getValue() == buffer.getInt(pos + Integer.BYTES) ? length : -1;
+    }
+
+    /** The offset was valid once, but retention has since deleted its segment. */
+    public static final class NotRetainedException extends IllegalArgumentException {
+        NotRetainedException(long offset) {
+            super("Offset " + offset + " is no longer retained");
+        }
+    }
+
+    public final class Tailer {
+
+        private long offset;
+
+        private Tailer(long offset) {
+            this.offset = offset;
+        }
+
+        /** Offset of the next record this tailer will deliver. */
+        public long offset() {
+            return offset;
+        }
+
+        /** Delivers up to {@code maxRecords} available records and returns how many it delivered. */
+        public int poll(RecordHandler handler, int maxRecords) {
+            long end = endOffset;
+            int delivered = 0;
+            while (delivered < maxRecords && offset < end) {
+                Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+                if (entry == null) {
+                    // Retention dropped the segment after this tailer was created
+                    throw new NotRetainedException(offset);
+                }
+                Segment segment = entry.getValue();
+                int pos = (int) (offset - segment.base);
+                int length = validRecordLength(segment.buffer, pos, crcs.get());
+                if (length < 0) {
+                    throw new IllegalStateException("Corrupt record at journal offset " + offset);
+                }
+                handler.onRecord(offset, segment.buffer.slice(pos + HEADER_SIZE, length).asReadOnlyBuffer());
+                offset += HEADER_SIZE + length;
+                delivered++;
+            }
+            return delivered;
+        }
+    }
+
+    private static final class Segment {
+        final long base;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int position;
+
+        private Segment(long base, Path path, MappedByteBuffer buffer) {
+            this.base = base;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, long base, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping stays valid after the channel is closed
+                return new Segment(base, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+
+        /**
+         * Finds the end of the last complete record after a restart. A damaged record with
+         * readable records behind it is left in place (tailers report it as corrupt); only the
+         * torn tail after the last readable record is cleared.
+         */
+        int recover() {
+            CRC32C crc = new CRC32C();
+            int capacity = buffer.capacity();
+            int pos = 0;
+            int end = 0;
+            int damaged = 0;
+            int unreadable = 0;
+            boolean tornTail = false;
+            while (pos + HEADER_SIZE <= capacity) {
+                int length = validRecordLength(buffer, pos, crc);
+                if (length > 0) {
+                    pos += HEADER_SIZE + length;
+                    end = pos;
+                    // Unreadable frames followed by a readable one are damage, not the tail
+                    damaged += unreadable;
+                    unreadable = 0;
+                    tornTail = false;
+                    continue;
+                }
+                unreadable++;
+                tornTail |= buffer.getInt(pos) != 0;
+                // Events are fixed-size, so the next frame starts one record further on
+                pos += HEADER_SIZE + OrderJournalEvent.SIZE;
+            }
+            pos = end;
+            if (tornTail) {
+                // Torn write from a crash: clear it so later appends don't leave stale bytes behind
+                int i = pos;
+                for (; i + Long.BYTES <= capacity; i += Long.BYTES) {
+                    buffer.putLong(i, 0);
+                }
+                for (; i < capacity; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                buffer.force();
+            }
+            position = pos;
+            return damaged;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.shop.orders;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One order lifecycle transition as stored in the {@link OrderJournal}.
+ * Encoded as a fixed 46-byte big-endian record:
+ * <pre>
+ *   byte version | byte type | long timestampMillis | long orderId | long sagaId
+ *   | long userId | int itemCount | long amountCents
+ * </pre>
+ * orderId is 0 until the order row exists (CONFIRMED).
+ */
+public record OrderJournalEvent(
+        Type type,
+        long timestampMillis,
+        long orderId,
+        long sagaId,
+        long userId,
+        int itemCount,
+        long amountCents
+) {
+
+    public static final int SIZE = 46;
+    private static final byte VERSION = 1;
+
+    public enum Type {
+        PLACED(1),
+        RESERVED(2),
+        PAID(3),
+        CONFIRMED(4),
+        COMPENSATING(5),
+        COMPENSATED(6),
+        FAILED(7);
+
+        // Stable on-disk code; never reuse or renumber
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        static Type fromCode(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown journal event type " + code);
+        }
+    }
+
+    public void encodeTo(ByteBuffer target) {
+        target.put(VERSION)
+                .put(type.code)
+                .putLong(timestampMillis)
+                .putLong(orderId)
+                .putLong(sagaId)
+                .putLong(userId)
+                .putInt(itemCount)
+                .putLong(amountCents);
+    }
+
+    public static OrderJournalEvent decode(ByteBuffer payload) {
+        int p = payload.position();
+        byte version = payload.get(p);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported journal event version " + version);
+        }
+        return new OrderJournalEvent(
+                Type.fromCode(payload.get(p + 1)),
+                payload.getLong(p + 2),
+                payload.getLong(p + 10),
+                payload.getLong(p + 18),
+                payload.getLong(p + 26),
+                payload.getInt(p + 34),
+                payload.getLong(p + 38)
+        );
+    }
+}
@@ -1,8 +1,57 @@
 package com.shop.orders;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
+
+    // Reads load items up front: responses are built after the shard scope has ended
+    @EntityGraph(attributePaths = "items")
     List<OrderEntity> findByUserIdOrderByCreatedAtDesc(Long userId);
+
+    @EntityGraph(attributePaths = "items")
+    Optional<OrderEntity> findWithItemsById(Long id);
+
+    @EntityGraph(attributePaths = "items")
+    List<OrderEntity> findAllByOrderByCreatedAtDesc();
+
+    // Cheap aggregate over the (user_id, created_at) index; changes whenever a user's orders change
+    @Query("select count(o) as count, max(o.updatedAt) as lastUpdated from OrderEntity o where o.userId = :userId")
+    OrderVersion findOrderVersionByUserId(@Param("userId") Long userId);
+
+    // --- Archival: oldest-first batches, locked with SKIP LOCKED so replicas don't collide ---
+
+    @Query("select o.id from OrderEntity o where o.createdAt < :cutoff order by o.createdAt")
+    List<Long> findIdsCreatedBefore(@Param("cutoff") Instant cutoff, Pageable pageable);
+
+    @EntityGraph(attributePaths = "items")
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<OrderEntity> findWithItemsByIdIn(Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from OrderItemEntity i where i.order.id in :ids")
+    int deleteItemsByOrderIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from OrderEntity o where o.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    interface OrderVersion {
+        long getCount();
+        Instant getLastUpdated();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.shop.orders;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Pre-aggregated order counts per time bucket and status.
+ * Rows are only written through the upserts in OrderRollupRepository.
+ */
+@Entity
+@Table(name = "order_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_order_rollups_bucket", columnNames = {"granularity", "bucket_start", "status"})
+})
+public class OrderRollupEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private RollupGranularity granularity;
+
+    @Column(nullable = false, name = "bucket_start")
+    private Instant bucketStart;
+
+    @Column(nullable = false, length = 32)
+    private String status;
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    @Column(nullable = false)
+    private long itemCount;
+
+    public OrderRollupEntity() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public RollupGranularity getGranularity() {
+        return granularity;
+    }
+
+    public Instant getBucketStart() {
+        return bucketStart;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+}
@@ -0,0 +1,56 @@
+package com.shop.orders;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface OrderRollupRepository extends JpaRepository<OrderRollupEntity, Long> {
+
+    List<OrderRollupEntity> findByGranularityAndBucketStartBetweenOrderByBucketStart(
+            RollupGranularity granularity, Instant from, Instant to);
+
+    @Modifying
+    @Query(value = """
+            insert into order_rollups (granularity, bucket_start, status, order_count, item_count)
+            values (:granularity, :bucketStart, :status, 1, :itemCount)
+            on duplicate key update order_count = order_count + 1, item_count = item_count + :itemCount
+            """, nativeQuery = true)
+    void increment(@Param("granularity") String granularity,
+                   @Param("bucketStart") Instant bucketStart,
+                   @Param("status") String status,
+                   @Param("itemCount") int itemCount);
+
+    @Modifying
+    @Query(value = "delete from order_rollups where granularity = :granularity and bucket_start < :cutoff",
+            nativeQuery = true)
+    int deleteBefore(@Param("granularity") String granularity, @Param("cutoff") Instant cutoff);
+
+    /**
+     * Recomputes the buckets before {@code cutoff} from hot and archived orders; the format
+     * string truncates to the bucket boundary. The cutoff must be on a bucket boundary and
+     * old enough that every order before it has committed, so buckets from the cutoff on
+     * stay owned by the incremental path.
+     */
+    @Modifying
+    @Query(value = """
+            insert into order_rollups (granularity, bucket_start, status, order_count, item_count)
+            select :granularity, timestamp(date_format(t.created_at, :bucketFormat)), t.status, count(*), sum(t.item_count)
+            from (
+                select o.created_at, o.status, coalesce(sum(i.quantity), 0) as item_count
+                from orders o left join order_items i on i.order_id = o.id
+                where o.created_at < :cutoff
+                group by o.id, o.created_at, o.status
+                union all
+                select a.created_at, a.status, a.item_count from orders_archive a
+                where a.created_at < :cutoff
+            ) t
+            group by timestamp(date_format(t.created_at, :bucketFormat)), t.status
+            """, nativeQuery = true)
+    int rebuildBefore(@Param("granularity") String granularity,
+                      @Param("bucketFormat") String bucketFormat,
+                      @Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,157 @@
+package com.shop.orders;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.shop.orders.OrderDtos.OrderRollupResponse;
+import static com.shop.orders.OrderDtos.UserOrderSummaryResponse;
+
+/**
+ * Maintains the order_rollups and user_order_summaries tables so dashboards and the
+ * account page read a handful of pre-aggregated rows instead of scanning order history.
+ * Both live next to the orders they summarise: a user's summary on the user's shard, and
+ * each shard's share of the rollups on that shard, summed at read time.
+ */
+@Component
+public class OrderRollups {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderRollups.class);
+
+    // Guards the range endpoint against accidentally scanning years of minute buckets
+    private static final int MAX_BUCKETS = 10_000;
+
+    private final OrderRollupRepository rollupRepository;
+    private final UserOrderSummaryRepository summaryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate rebuildTemplate;
+    private final OrderShards orderShards;
+    private final Duration rebuildSettle;
+    private final Counter failedUpdates;
+
+    public OrderRollups(OrderRollupRepository rollupRepository,
+                        UserOrderSummaryRepository summaryRepository,
+                        PlatformTransactionManager transactionManager,
+                        OrderShards orderShards,
+                        MeterRegistry meterRegistry,
+                        @Value("${orders.rollups.rebuild-settle-ms:600000}") long rebuildSettleMs) {
+        this.rollupRepository = rollupRepository;
+        this.summaryRepository = summaryRepository;
+        this.orderShards = orderShards;
+        // The order's transaction has already committed; run the upserts in a fresh one
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // READ COMMITTED: the rebuild's INSERT ... SELECT reads orders without the shared
+        // next-key locks REPEATABLE READ would hold, so createOrder inserts don't wait on it
+        this.rebuildTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.rebuildTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.rebuildSettle = Duration.ofMillis(rebuildSettleMs);
+        this.failedUpdates = Counter.builder("orders.rollups.update.failures")
+                .description("Incremental rollup updates that failed and await the next rebuild")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        try {
+            orderShards.on(orderShards.shardForUser(event.userId()), () ->
+                    transactionTemplate.executeWithoutResult(status -> {
+                        for (RollupGranularity granularity : RollupGranularity.values()) {
+                            rollupRepository.increment(
+                                    granularity.name(),
+                                    granularity.bucketStart(event.createdAt()),
+                                    event.status(),
+                                    event.itemCount());
+                        }
+                        summaryRepository.increment(event.userId(), event.itemCount(), event.createdAt());
+                    }));
+        } catch (RuntimeException ex) {
+            // The order itself is committed; never fail the request over a rollup
+            failedUpdates.increment();
+            logger.error("Failed to update rollups for orderId={}", event.orderId(), ex);
+        }
+    }
+
+    /**
+     * Repairs drift left by failed incremental updates. Only history before a cutoff is
+     * recomputed: an hour boundary at least rebuild-settle-ms back, by which time every
+     * order before it has committed and been counted incrementally. Newer buckets, and
+     * users who ordered since the cutoff, stay with {@link #onOrderCreated}, so the two
+     * paths never count the same order twice.
+     */
+    @Scheduled(cron = "${orders.rollups.rebuild-cron:0 30 3 * * *}")
+    public void rebuild() {
+        Instant cutoff = RollupGranularity.HOUR.bucketStart(Instant.now().minus(rebuildSettle));
+        orderShards.forEach(shard -> {
+            logger.info("Rebuilding order rollups and user summaries before {} shard={}", cutoff, shard);
+            rebuildTemplate.executeWithoutResult(status -> {
+                for (RollupGranularity granularity : RollupGranularity.values()) {
+                    rollupRepository.deleteBefore(granularity.name(), cutoff);
+                    int rows = rollupRepository.rebuildBefore(granularity.name(), bucketFormat(granularity), cutoff);
+                    logger.info("Rebuilt {} {} rollup rows shard={}", rows, granularity, shard);
+                }
+            });
+            int users = rebuildTemplate.execute(status -> summaryRepository.rebuildSettled(cutoff));
+            logger.info("Rebuilt user summaries ({} rows affected) shard={}", users, shard);
+        });
+    }
+
+    public List<OrderRollupResponse> getRollups(RollupGranularity granularity, Instant from, Instant to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        long buckets = Duration.between(from, to).dividedBy(granularity.bucketSize());
+        if (buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Range too large: at most " + MAX_BUCKETS + " " + granularity + " buckets");
+        }
+        List<List<OrderRollupEntity>> perShard = orderShards.scatter(shard ->
+                rollupRepository.findByGranularityAndBucketStartBetweenOrderByBucketStart(
+                        granularity, granularity.bucketStart(from), to));
+
+        Map<String, OrderRollupResponse> merged = new HashMap<>();
+        for (List<OrderRollupEntity> rows : perShard) {
+            for (OrderRollupEntity row : rows) {
+                merged.merge(row.getBucketStart() + "|" + row.getStatus(),
+                        OrderRollupResponse.fromEntity(row), OrderRollupResponse::plus);
+            }
+        }
+        return merged.values().stream()
+                .sorted(Comparator.comparing(OrderRollupResponse::bucketStart)
+                        .thenComparing(OrderRollupResponse::status))
+                .toList();
+    }
+
+    // A user moved by an appended shard has a partial summary on each shard they were placed on
+    public Optional<UserOrderSummaryResponse> getUserSummary(Long userId) {
+        return orderShards.shardsForUser(userId).stream()
+                .map(shard -> orderShards.on(shard, () -> summaryRepository.findById(userId)))
+                .flatMap(Optional::stream)
+                .map(UserOrderSummaryResponse::fromEntity)
+                .reduce(UserOrderSummaryResponse::plus);
+    }
+
+    private static String bucketFormat(RollupGranularity granularity) {
+        return switch (granularity) {
+            case MINUTE -> "%Y-%m-%d %H:%i:00";
+            case HOUR -> "%Y-%m-%d %H:00:00";
+        };
+    }
+}
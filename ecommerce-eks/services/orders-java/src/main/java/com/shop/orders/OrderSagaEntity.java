@@ -0,0 +1,133 @@
+package com.shop.orders;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Durable log of one createOrder saga: what was reserved and charged, and which
+ * compensations are still owed. Lives in the orders database so the COMPLETED
+ * transition commits atomically with the order itself. State changes go through
+ * the conditional updates in OrderSagaRepository, never through a merge.
+ */
+@Entity
+@Table(name = "order_sagas", indexes = {
+        @Index(name = "idx_order_sagas_state_next", columnList = "state, nextAttemptAt")
+})
+public class OrderSagaEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OrderSagaState state;
+
+    // Products and merged quantities to reserve, as JSON
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String itemsJson;
+
+    @Column(nullable = false)
+    private double amount;
+
+    @Column(nullable = false, length = 8)
+    private String currency;
+
+    @Column(length = 64)
+    private String paymentTransactionId;
+
+    private Long orderId;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(length = 500)
+    private String lastError;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    public OrderSagaEntity() {
+    }
+
+    public OrderSagaEntity(Long userId, String itemsJson, double amount, String currency, Instant now) {
+        this.userId = userId;
+        this.state = OrderSagaState.STARTED;
+        this.itemsJson = itemsJson;
+        this.amount = amount;
+        this.currency = currency;
+        this.nextAttemptAt = now;
+        this.createdAt = now;
+        this.updatedAt = now;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public OrderSagaState getState() {
+        return state;
+    }
+
+    public String getItemsJson() {
+        return itemsJson;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public String getPaymentTransactionId() {
+        return paymentTransactionId;
+    }
+
+    public void setPaymentTransactionId(String paymentTransactionId) {
+        this.paymentTransactionId = paymentTransactionId;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
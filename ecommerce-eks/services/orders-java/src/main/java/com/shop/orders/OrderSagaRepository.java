@@ -0,0 +1,118 @@
+package com.shop.orders;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * State changes are compare-and-set on the current state: a zero row count means
+ * another actor (usually the recovery worker) has already moved the saga on.
+ */
+public interface OrderSagaRepository extends JpaRepository<OrderSagaEntity, Long> {
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update OrderSagaEntity s set s.state = :to, s.updatedAt = :now
+            where s.id = :id and s.state = :from
+            """)
+    int transition(@Param("id") Long id,
+                   @Param("from") OrderSagaState from,
+                   @Param("to") OrderSagaState to,
+                   @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update OrderSagaEntity s
+            set s.state = com.shop.orders.OrderSagaState.PAID, s.paymentTransactionId = :transactionId, s.updatedAt = :now
+            where s.id = :id and s.state = com.shop.orders.OrderSagaState.RESERVED
+            """)
+    int markPaid(@Param("id") Long id,
+                 @Param("transactionId") String transactionId,
+                 @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update OrderSagaEntity s
+            set s.state = com.shop.orders.OrderSagaState.COMPLETED, s.orderId = :orderId, s.updatedAt = :now
+            where s.id = :id and s.state = com.shop.orders.OrderSagaState.PAID
+            """)
+    int complete(@Param("id") Long id,
+                 @Param("orderId") Long orderId,
+                 @Param("now") Instant now);
+
+    /**
+     * Takes ownership of a compensation: moves the saga to COMPENSATING, bumps attempts
+     * and leases it until {@code leaseUntil}. Matching on the observed attempts makes
+     * this a true compare-and-set even for a saga that is already COMPENSATING.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update OrderSagaEntity s
+            set s.state = com.shop.orders.OrderSagaState.COMPENSATING, s.attempts = s.attempts + 1,
+                s.nextAttemptAt = :leaseUntil, s.updatedAt = :now
+            where s.id = :id and s.state in :from and s.attempts = :attempts
+            """)
+    int claimCompensation(@Param("id") Long id,
+                          @Param("from") Collection<OrderSagaState> from,
+                          @Param("attempts") int attempts,
+                          @Param("leaseUntil") Instant leaseUntil,
+                          @Param("now") Instant now);
+
+    // Only the owner of the claim (same attempts value) can record its outcome
+    @Transactional
+    @Modifying
+    @Query("""
+            update OrderSagaEntity s
+            set s.state = :to, s.lastError = :error, s.nextAttemptAt = :nextAttemptAt, s.updatedAt = :now
+            where s.id = :id and s.state = com.shop.orders.OrderSagaState.COMPENSATING and s.attempts = :attempts
+            """)
+    int finishCompensation(@Param("id") Long id,
+                           @Param("attempts") int attempts,
+                           @Param("to") OrderSagaState to,
+                           @Param("error") String error,
+                           @Param("nextAttemptAt") Instant nextAttemptAt,
+                           @Param("now") Instant now);
+
+    /**
+     * Hands a charge the saga row never recorded (markPaid lost the race to recovery) to
+     * the recovery worker. Bumping attempts voids any compensation already in progress,
+     * so the saga is compensated again, this time with the refund.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update OrderSagaEntity s
+            set s.state = com.shop.orders.OrderSagaState.COMPENSATING, s.paymentTransactionId = :transactionId,
+                s.attempts = s.attempts + 1, s.nextAttemptAt = :now, s.updatedAt = :now
+            where s.id = :id and s.paymentTransactionId is null
+              and s.state in (com.shop.orders.OrderSagaState.COMPENSATING,
+                              com.shop.orders.OrderSagaState.COMPENSATED,
+                              com.shop.orders.OrderSagaState.FAILED)
+            """)
+    int handOverCharge(@Param("id") Long id,
+                       @Param("transactionId") String transactionId,
+                       @Param("now") Instant now);
+
+    // Compensations due for a retry, plus forward sagas abandoned by a crashed replica
+    @Query("""
+            select s.id from OrderSagaEntity s
+            where (s.state = com.shop.orders.OrderSagaState.COMPENSATING and s.nextAttemptAt <= :now)
+               or (s.state in :inFlight and s.updatedAt < :stuckBefore)
+            order by s.id
+            """)
+    List<Long> findIdsNeedingRecovery(@Param("now") Instant now,
+                                      @Param("inFlight") Collection<OrderSagaState> inFlight,
+                                      @Param("stuckBefore") Instant stuckBefore,
+                                      Pageable page);
+}
@@ -0,0 +1,21 @@
+package com.shop.orders;
+
+/**
+ * Steps of the createOrder saga as recorded in order_sagas.
+ * Forward: STARTED -> RESERVED -> PAID -> COMPLETED.
+ * Undo: any forward state -> COMPENSATING -> COMPENSATED, or FAILED once retries run out.
+ */
+public enum OrderSagaState {
+
+    STARTED,
+    RESERVED,
+    PAID,
+    COMPLETED,
+    COMPENSATING,
+    COMPENSATED,
+    FAILED;
+
+    public boolean isInFlight() {
+        return this == STARTED || this == RESERVED || this == PAID;
+    }
+}
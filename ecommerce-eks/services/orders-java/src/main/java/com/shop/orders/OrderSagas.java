@@ -0,0 +1,296 @@
+package com.shop.orders;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.shop.orders.OrderDtos.OrderItemRequest;
+
+/**
+ * Saga log and compensations for createOrder. Stock is reserved before the card is
+ * charged; any failure after the first reservation releases the reservations and
+ * refunds the charge. Compensations that fail are retried by {@link #recover()} with
+ * exponential backoff, which also picks up sagas abandoned mid-flight by a crash.
+ * Every transition is also appended to the {@link OrderJournal}. Saga rows live on the
+ * user's order shard; callers run inside that shard's scope.
+ */
+@Component
+public class OrderSagas {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderSagas.class);
+    private static final TypeReference<List<SagaItem>> ITEMS_TYPE = new TypeReference<>() {};
+    private static final Set<OrderSagaState> IN_FLIGHT =
+            EnumSet.of(OrderSagaState.STARTED, OrderSagaState.RESERVED, OrderSagaState.PAID);
+
+    public record SagaItem(String productId, int quantity) {
+    }
+
+    private final OrderSagaRepository sagaRepository;
+    private final InventoryClient inventoryClient;
+    private final PaymentClient paymentClient;
+    private final ObjectMapper objectMapper;
+    private final OrderJournal orderJournal;
+    private final OrderShards orderShards;
+    private final int maxAttempts;
+    private final Duration stuckAfter;
+    private final Duration retryBase;
+    private final Duration retryMax;
+    private final int batchSize;
+    private final Counter completed;
+    private final Counter compensated;
+    private final Counter retried;
+    private final Counter failed;
+
+    public OrderSagas(OrderSagaRepository sagaRepository,
+                      InventoryClient inventoryClient,
+                      PaymentClient paymentClient,
+                      ObjectMapper objectMapper,
+                      OrderJournal orderJournal,
+                      OrderShards orderShards,
+                      MeterRegistry meterRegistry,
+                      @Value("${orders.saga.max-attempts:20}") int maxAttempts,
+                      @Value("${orders.saga.stuck-after-ms:120000}") long stuckAfterMs,
+                      @Value("${orders.saga.retry-base-ms:1000}") long retryBaseMs,
+                      @Value("${orders.saga.retry-max-ms:300000}") long retryMaxMs,
+                      @Value("${orders.saga.recovery-batch-size:100}") int batchSize) {
+        this.sagaRepository = sagaRepository;
+        this.inventoryClient = inventoryClient;
+        this.paymentClient = paymentClient;
+        this.objectMapper = objectMapper;
+        this.orderJournal = orderJournal;
+        this.orderShards = orderShards;
+        this.maxAttempts = maxAttempts;
+        this.stuckAfter = Duration.ofMillis(stuckAfterMs);
+        this.retryBase = Duration.ofMillis(retryBaseMs);
+        this.retryMax = Duration.ofMillis(retryMaxMs);
+        this.batchSize = batchSize;
+        this.completed = Counter.builder("orders.saga.completed")
+                .description("Order sagas that reached COMPLETED")
+                .register(meterRegistry);
+        this.compensated = compensationCounter(meterRegistry, "compensated");
+        this.retried = compensationCounter(meterRegistry, "retry");
+        this.failed = compensationCounter(meterRegistry, "failed");
+    }
+
+    private static Counter compensationCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("orders.saga.compensations")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    public OrderSagaEntity start(Long userId, List<OrderItemRequest> items, double amount, String currency) {
+        // Duplicate lines for one product become one reservation
+        Map<String, Integer> merged = new LinkedHashMap<>();
+        for (OrderItemRequest item : items) {
+            merged.merge(item.productId(), item.quantity(), Integer::sum);
+        }
+        List<SagaItem> sagaItems = new ArrayList<>();
+        merged.forEach((productId, quantity) -> sagaItems.add(new SagaItem(productId, quantity)));
+
+        var saga = sagaRepository.save(new OrderSagaEntity(userId, encodeItems(sagaItems), amount, currency, Instant.now()));
+        logger.info("Order saga started sagaId={} userId={}", saga.getId(), userId);
+        journal(saga, OrderJournalEvent.Type.PLACED, 0);
+        return saga;
+    }
+
+    public void reserve(OrderSagaEntity saga) {
+        for (SagaItem item : items(saga)) {
+            int remaining = inventoryClient.reserve(saga.getId(), item.productId(), item.quantity());
+            logger.debug("Reserved productId={} quantity={} remaining={} sagaId={}",
+                    item.productId(), item.quantity(), remaining, saga.getId());
+        }
+        advance(sagaRepository.transition(saga.getId(), OrderSagaState.STARTED, OrderSagaState.RESERVED, Instant.now()),
+                saga, OrderSagaState.RESERVED);
+        journal(saga, OrderJournalEvent.Type.RESERVED, 0);
+    }
+
+    public void markPaid(OrderSagaEntity saga, String transactionId) {
+        // Kept in memory first so an in-process compensation can refund even if the update loses a race
+        saga.setPaymentTransactionId(transactionId);
+        advance(sagaRepository.markPaid(saga.getId(), transactionId, Instant.now()), saga, OrderSagaState.PAID);
+        journal(saga, OrderJournalEvent.Type.PAID, 0);
+    }
+
+    /** Must run inside the transaction that persists the order. */
+    public void complete(OrderSagaEntity saga, Long orderId) {
+        advance(sagaRepository.complete(saga.getId(), orderId, Instant.now()), saga, OrderSagaState.COMPLETED);
+        completed.increment();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Journal only orders that actually committed
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    journal(saga, OrderJournalEvent.Type.CONFIRMED, orderId);
+                }
+            });
+        } else {
+            journal(saga, OrderJournalEvent.Type.CONFIRMED, orderId);
+        }
+    }
+
+    private void advance(int updated, OrderSagaEntity saga, OrderSagaState to) {
+        if (updated == 0) {
+            throw new IllegalStateException("Order saga " + saga.getId() + " was taken over before reaching " + to);
+        }
+    }
+
+    /**
+     * Compensates a saga the calling request thread was driving. If recovery has already
+     * taken it over, that worker does the undo; a charge the saga row never recorded is
+     * handed over to it so the refund is not lost.
+     */
+    public void compensate(OrderSagaEntity saga, String reason) {
+        if (compensate(saga, IN_FLIGHT, reason)) {
+            return;
+        }
+        String transactionId = saga.getPaymentTransactionId();
+        if (transactionId != null && sagaRepository.handOverCharge(saga.getId(), transactionId, Instant.now()) > 0) {
+            logger.warn("Handed unrecorded charge transactionId={} to saga recovery sagaId={}",
+                    transactionId, saga.getId());
+        }
+    }
+
+    /**
+     * Releases every reservation and refunds the charge, if any. The saga row is claimed
+     * first (compare-and-set from {@code from} plus the observed attempts), and only the
+     * claimant calls inventory and payments, so a saga that completes concurrently is
+     * never undone. All calls are idempotent, so a retry after a crash is safe. If a call
+     * fails, the saga is left COMPENSATING for the recovery worker, or FAILED once
+     * maxAttempts is reached. Returns false if another actor owned the saga.
+     */
+    private boolean compensate(OrderSagaEntity saga, Set<OrderSagaState> from, String reason) {
+        Instant claimedAt = Instant.now();
+        // The lease lets another replica retry if this one dies mid-compensation
+        if (sagaRepository.claimCompensation(saga.getId(), from, saga.getAttempts(),
+                claimedAt.plus(stuckAfter), claimedAt) == 0) {
+            logger.info("Order saga sagaId={} already moved on, not compensating", saga.getId());
+            return false;
+        }
+        int attempts = saga.getAttempts() + 1;
+        if (saga.getState() != OrderSagaState.COMPENSATING) {
+            journal(saga, OrderJournalEvent.Type.COMPENSATING, 0);
+        }
+        logger.warn("Compensating order saga sagaId={} attempt={} reason={}", saga.getId(), attempts, reason);
+        try {
+            for (SagaItem item : items(saga)) {
+                inventoryClient.release(saga.getId(), item.productId(), item.quantity());
+            }
+            if (saga.getPaymentTransactionId() != null) {
+                paymentClient.refund(saga.getPaymentTransactionId(), "Order saga " + saga.getId() + " compensation");
+            }
+        } catch (RuntimeException ex) {
+            boolean exhausted = attempts >= maxAttempts;
+            Instant now = Instant.now();
+            int updated = sagaRepository.finishCompensation(saga.getId(), attempts,
+                    exhausted ? OrderSagaState.FAILED : OrderSagaState.COMPENSATING,
+                    truncate(ex.getMessage()), now.plus(backoff(attempts - 1)), now);
+            if (updated == 0) {
+                logger.warn("Order saga compensation superseded sagaId={}", saga.getId(), ex);
+            } else if (exhausted) {
+                journal(saga, OrderJournalEvent.Type.FAILED, 0);
+                failed.increment();
+                logger.error("Order saga compensation FAILED permanently sagaId={}", saga.getId(), ex);
+            } else {
+                retried.increment();
+                logger.warn("Order saga compensation will be retried sagaId={}", saga.getId(), ex);
+            }
+            return true;
+        }
+        Instant now = Instant.now();
+        if (sagaRepository.finishCompensation(saga.getId(), attempts, OrderSagaState.COMPENSATED,
+                truncate(reason), now, now) == 0) {
+            logger.warn("Order saga compensation superseded sagaId={}", saga.getId());
+            return true;
+        }
+        journal(saga, OrderJournalEvent.Type.COMPENSATED, 0);
+        compensated.increment();
+        logger.info("Order saga compensated sagaId={}", saga.getId());
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${orders.saga.recovery-interval-ms:10000}",
+            initialDelayString = "${orders.saga.recovery-initial-delay-ms:30000}")
+    public void recover() {
+        orderShards.forEach(shard -> recoverShard());
+    }
+
+    private void recoverShard() {
+        Instant now = Instant.now();
+        List<Long> ids = sagaRepository.findIdsNeedingRecovery(now, IN_FLIGHT, now.minus(stuckAfter),
+                PageRequest.of(0, batchSize));
+        for (Long id : ids) {
+            sagaRepository.findById(id).ifPresent(saga -> {
+                if (saga.getState().isInFlight()) {
+                    logger.warn("Order saga abandoned in state={} sagaId={}", saga.getState(), saga.getId());
+                }
+                // Claim against the state we just read, so a saga that moved on is left alone
+                compensate(saga, EnumSet.of(saga.getState()), saga.getState().isInFlight()
+                        ? "abandoned in " + saga.getState()
+                        : saga.getLastError());
+            });
+        }
+        if (!ids.isEmpty()) {
+            logger.info("Order saga recovery processed {} sagas", ids.size());
+        }
+    }
+
+    private void journal(OrderSagaEntity saga, OrderJournalEvent.Type type, long orderId) {
+        if (!orderJournal.isEnabled()) {
+            return;
+        }
+        int itemCount = items(saga).stream().mapToInt(SagaItem::quantity).sum();
+        orderJournal.append(new OrderJournalEvent(
+                type,
+                System.currentTimeMillis(),
+                orderId,
+                saga.getId(),
+                saga.getUserId(),
+                itemCount,
+                Math.round(saga.getAmount() * 100)
+        ));
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = retryBase.multipliedBy(1L << Math.min(attempts, 20));
+        return delay.compareTo(retryMax) > 0 ? retryMax : delay;
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    private List<SagaItem> items(OrderSagaEntity saga) {
+        try {
+            return objectMapper.readValue(saga.getItemsJson(), ITEMS_TYPE);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to decode items for sagaId=" + saga.getId(), ex);
+        }
+    }
+
+    private String encodeItems(List<SagaItem> items) {
+        try {
+            return objectMapper.writeValueAsString(items);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to encode saga items", ex);
+        }
+    }
+}
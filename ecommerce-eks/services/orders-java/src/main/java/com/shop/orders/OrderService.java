@@ -1,11 +1,18 @@
 package com.shop.orders;
 
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.time.Instant;
 import static com.shop.orders.OrderDtos.CreateOrderRequest;
 import static com.shop.orders.OrderDtos.PaymentInfo;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,22 +21,61 @@ import org.slf4j.LoggerFactory;
 public class OrderService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
+    private static final Comparator<OrderEntity> NEWEST_FIRST =
+            Comparator.comparing(OrderEntity::getCreatedAt).reversed();
     private final OrderRepository orderRepository;
     private final InventoryClient inventoryClient;
     private final PaymentClient paymentClient;
     private final UserClient userClient;
+    private final OrderArchiver orderArchiver;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObservationRegistry observationRegistry;
+    private final OrderSagas orderSagas;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderShards orderShards;
 
     public OrderService(OrderRepository orderRepository,
                         InventoryClient inventoryClient,
                         PaymentClient paymentClient,
-                        UserClient userClient) {
+                        UserClient userClient,
+                        OrderArchiver orderArchiver,
+                        ApplicationEventPublisher eventPublisher,
+                        ObservationRegistry observationRegistry,
+                        OrderSagas orderSagas,
+                        TransactionTemplate transactionTemplate,
+                        OrderShards orderShards) {
         this.orderRepository = orderRepository;
         this.inventoryClient = inventoryClient;
         this.paymentClient = paymentClient;
         this.userClient = userClient;
+        this.orderArchiver = orderArchiver;
+        this.eventPublisher = eventPublisher;
+        this.observationRegistry = observationRegistry;
+        this.orderSagas = orderSagas;
+        this.transactionTemplate = transactionTemplate;
+        this.orderShards = orderShards;
     }
 
-    @Transactional
+    // Each createOrder stage gets its own span and an orders.create.stage timer tagged by stage
+    private <T> T stage(String name, Supplier<T> work) {
+        return Observation.createNotStarted("orders.create.stage", observationRegistry)
+                .contextualName("createOrder " + name)
+                .lowCardinalityKeyValue("stage", name)
+                .observe(work);
+    }
+
+    private void stage(String name, Runnable work) {
+        Observation.createNotStarted("orders.create.stage", observationRegistry)
+                .contextualName("createOrder " + name)
+                .lowCardinalityKeyValue("stage", name)
+                .observe(work);
+    }
+
+    /**
+     * Runs as a saga: cheap read-only checks first, then stock reservations, then the
+     * payment charge, then the order row. A failure after the first reservation is
+     * compensated (see {@link OrderSagas}) before the error reaches the caller.
+     */
     public OrderEntity createOrder(CreateOrderRequest request) {
 
         logger.info("Starting order creation for userId={} with {} items",
@@ -51,13 +97,108 @@ public class OrderService {
             throw new IllegalArgumentException("payment.amount must be > 0");
         }
 
-        // -------------------- 1. PAYMENT --------------------
-        logger.info("Charging payment for userId={} amount={} {}",
-                request.userId(),
-                payment.amount(),
-                payment.currency() != null ? payment.currency() : "USD");
+        // -------------------- 1. USER LOOKUP --------------------
+        logger.info("Fetching user details for userId={}", request.userId());
+
+        var user = stage("user-lookup", () -> userClient.getUser(request.userId()));
+        if (user == null) {
+            logger.error("User not found for id={}", request.userId());
+            throw new IllegalStateException("User not found for id: " + request.userId());
+        }
+
+        logger.info("User lookup successful: userId={} city={} state={}",
+                user.id(),
+                user.city(),
+                user.state());
+
+        // -------------------- 2. STOCK CHECK --------------------
+        logger.info("Checking stock for {} items for userId={}",
+                request.items().size(),
+                request.userId());
+
+        // Rejects obviously unavailable orders without touching inventory or payments
+        stage("stock-check", () -> checkStock(request));
+
+        logger.info("Stock check PASSED for all items userId={}", request.userId());
 
-        // 1. Charge payment first
+        // -------------------- 3. RESERVE STOCK --------------------
+        String currency = payment.currency() != null ? payment.currency() : "USD";
+        // The saga log and the order row live on the user's shard
+        int shard = orderShards.shardForUser(request.userId());
+        return orderShards.on(shard, () -> runSaga(request, payment, currency, user));
+    }
+
+    private OrderEntity runSaga(CreateOrderRequest request, PaymentInfo payment, String currency,
+                                UserClient.UserResponse user) {
+        OrderSagaEntity saga = orderSagas.start(request.userId(), request.items(), payment.amount(), currency);
+        try {
+            logger.info("Reserving stock for {} items userId={} sagaId={}",
+                    request.items().size(),
+                    request.userId(),
+                    saga.getId());
+
+            stage("reserve", () -> orderSagas.reserve(saga));
+
+            // -------------------- 4. PAYMENT --------------------
+            logger.info("Charging payment for userId={} amount={} {}",
+                    request.userId(),
+                    payment.amount(),
+                    currency);
+
+            var payResp = stage("payment", () -> chargePayment(request, payment));
+            orderSagas.markPaid(saga, payResp.transactionId());
+
+            // -------------------- 5. PERSIST --------------------
+            return stage("persist", () -> persistOrder(request, user, saga));
+        } catch (RuntimeException ex) {
+            orderSagas.compensate(saga, ex.getMessage());
+            throw ex;
+        }
+    }
+
+    // The order row and the saga's COMPLETED transition commit together
+    private OrderEntity persistOrder(CreateOrderRequest request, UserClient.UserResponse user, OrderSagaEntity saga) {
+        return transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            OrderEntity order = new OrderEntity(
+                    request.userId(),
+                    "CONFIRMED",
+                    now,
+                    now
+            );
+
+            order.setStreet(user.street());
+            order.setCity(user.city());
+            order.setState(user.state());
+            order.setPostalCode(user.postalCode());
+            order.setCountry(user.country());
+
+            for (var item : request.items()) {
+                OrderItemEntity entityItem = new OrderItemEntity(
+                        item.productId(),
+                        item.quantity()
+                );
+                order.addItem(entityItem);
+            }
+            logger.info("Saving order for userId={} with {} items",
+                    request.userId(),
+                    request.items().size());
+
+            OrderEntity savedOrder = orderRepository.save(order);
+            orderSagas.complete(saga, savedOrder.getId());
+
+            logger.info("Order saved successfully orderId={} userId={} sagaId={}",
+                    savedOrder.getId(),
+                    savedOrder.getUserId(),
+                    saga.getId());
+
+            // Delivered to rollups once this transaction commits
+            eventPublisher.publishEvent(OrderCreatedEvent.fromEntity(savedOrder));
+            return savedOrder;
+        });
+    }
+
+    private PaymentClient.PaymentResponse chargePayment(CreateOrderRequest request, PaymentInfo payment) {
         var payReq = new PaymentClient.PaymentRequest(
                 request.userId(),
                 payment.amount(),
@@ -79,28 +220,10 @@ public class OrderService {
         logger.info("Payment APPROVED for userId={} transactionId={}",
                 request.userId(),
                 payResp.transactionId());
+        return payResp;
+    }
 
-        // -------------------- 2. USER LOOKUP --------------------
-        logger.info("Fetching user details for userId={}", request.userId());
-
-        // 2. Fetch user and address BEFORE inventory mutations
-        var user = userClient.getUser(request.userId());
-        if (user == null) {
-            logger.error("User not found for id={}", request.userId());
-            throw new IllegalStateException("User not found for id: " + request.userId());
-        }
-
-        logger.info("User lookup successful: userId={} city={} state={}",
-                user.id(),
-                user.city(),
-                user.state());
-
-        // -------------------- 3. STOCK CHECK --------------------
-        logger.info("Checking stock for {} items for userId={}",
-                request.items().size(),
-                request.userId());
-
-        // 3. Check stock for all items
+    private void checkStock(CreateOrderRequest request) {
         for (var item : request.items()) {
             if (item.quantity() <= 0) {
                 logger.error("Invalid quantity={} for productId={} userId={}",
@@ -109,7 +232,8 @@ public class OrderService {
                         request.userId());
                 throw new IllegalArgumentException("Item quantity must be > 0");
             }
-            int available = inventoryClient.getStock(item.productId());
+            // May be served from the short-lived cache; the reservation is the authoritative check
+            int available = inventoryClient.getStock(item.productId(), InventoryClient.ReadOptions.BOUNDED_STALENESS);
 
             logger.debug("Stock check: productId={} available={} needed={}",
                     item.productId(), available, item.quantity());
@@ -120,82 +244,82 @@ public class OrderService {
                 throw new IllegalStateException("Insufficient stock for product " + item.productId());
             }
         }
-
-        logger.info("Stock check PASSED for all items userId={}", request.userId());
-
-        // -------------------- 4. DECREMENT STOCK --------------------
-        logger.info("Decrementing stock for {} items userId={}",
-                request.items().size(),
-                request.userId());
-
-
-        // 4. Decrement stock for all items
-        for (var item : request.items()) {
-            int available = inventoryClient.getStock(item.productId());
-            int newQty = available - item.quantity();
-
-            logger.debug("Updating stock: productId={} oldQty={} newQty={}",
-                    item.productId(), available, newQty);
-
-            inventoryClient.setStock(item.productId(), newQty);
-        }
-        logger.info("Stock decrement COMPLETE for userId={}", request.userId());
-
-        // 5. Persist order as CONFIRMED
-        Instant now = Instant.now();
-        OrderEntity order = new OrderEntity(
-                request.userId(),
-                "CONFIRMED",
-                now,
-                now
-        );
-
-        order.setStreet(user.street());
-        order.setCity(user.city());
-        order.setState(user.state());
-        order.setPostalCode(user.postalCode());
-        order.setCountry(user.country());
-
-        for (var item : request.items()) {
-            OrderItemEntity entityItem = new OrderItemEntity(
-                    item.productId(),
-                    item.quantity()
-            );
-            order.addItem(entityItem);
-        }
-        logger.info("Saving order for userId={} with {} items",
-                request.userId(),
-                request.items().size());
-
-        OrderEntity savedOrder = orderRepository.save(order);
-
-        logger.info("Order saved successfully orderId={} userId={}",
-                savedOrder.getId(),
-                savedOrder.getUserId());
-
-        return orderRepository.save(order);
     }
 
     public OrderEntity getOrder(Long id) {
         logger.info("Fetching orderId={}", id);
-        return orderRepository.findById(id)
+        // The id says which shard holds the order (and its archived copy)
+        return orderShards.on(orderShards.shardOfId(id), () -> orderRepository.findWithItemsById(id)
+                .or(() -> orderArchiver.findArchived(id))
                 .orElseThrow(() -> {
                     logger.error("Order not found orderId={}", id);
                     return new IllegalArgumentException("Order not found: " + id);
-                });
+                }));
     }
 
-    public List<OrderEntity> getOrdersByUserId(Long userId) {
-        logger.info("Fetching orders for userId={}", userId);
-        List<OrderEntity> orders = orderRepository.findByUserIdOrderByCreatedAtDesc(userId);
+    /**
+     * A user's history, newest first. Orders older than the archive retention live in
+     * orders_archive on the same shard; includeArchived adds them back.
+     */
+    public List<OrderEntity> getOrdersByUserId(Long userId, boolean includeArchived) {
+        logger.info("Fetching orders for userId={} includeArchived={}", userId, includeArchived);
+        // Older orders stay on the shard the user had before shards were appended
+        List<List<OrderEntity>> perShard = orderShards.shardsForUser(userId).stream()
+                .map(shard -> orderShards.on(shard, () -> withArchived(
+                        orderRepository.findByUserIdOrderByCreatedAtDesc(userId),
+                        includeArchived ? () -> orderArchiver.findArchivedByUserId(userId) : null)))
+                .toList();
+        List<OrderEntity> orders = perShard.size() == 1 ? perShard.get(0) : OrderShards.mergeSorted(perShard, NEWEST_FIRST);
         logger.info("Found {} orders for userId={}", orders.size(), userId);
         return orders;
     }
 
-    public List<OrderEntity> getAllOrders() {
-        logger.info("Fetching ALL orders");
-        List<OrderEntity> orders = orderRepository.findAll();
-        logger.info("Total orders fetched={}", orders.size());
+    // Covers exactly what getOrdersByUserId returns; archiving an order moves it between tiers
+    // without changing the tag when the archive is included
+    public String getOrdersVersionTag(Long userId, boolean includeArchived) {
+        long count = 0;
+        long lastUpdated = 0;
+        for (int shard : orderShards.shardsForUser(userId)) {
+            List<OrderRepository.OrderVersion> versions = orderShards.on(shard, () -> includeArchived
+                    ? List.of(orderRepository.findOrderVersionByUserId(userId), orderArchiver.findArchivedVersion(userId))
+                    : List.of(orderRepository.findOrderVersionByUserId(userId)));
+            for (var version : versions) {
+                count += version.getCount();
+                if (version.getLastUpdated() != null) {
+                    lastUpdated = Math.max(lastUpdated, version.getLastUpdated().toEpochMilli());
+                }
+            }
+        }
+        return userId + "-" + count + "-" + lastUpdated + (includeArchived ? "" : "-hot");
+    }
+
+    /**
+     * Every order, newest first. The archive is a full scan of the cold tier, so the listing
+     * only includes it when asked to.
+     */
+    public List<OrderEntity> getAllOrders(boolean includeArchived) {
+        logger.info("Fetching ALL orders includeArchived={}", includeArchived);
+        // Scatter to every shard in parallel, then merge the newest-first lists
+        List<List<OrderEntity>> perShard = orderShards.scatter(shard -> withArchived(
+                orderRepository.findAllByOrderByCreatedAtDesc(),
+                includeArchived ? orderArchiver::findAllArchived : null));
+        List<OrderEntity> orders = OrderShards.mergeSorted(perShard, NEWEST_FIRST);
+        logger.info("Total orders fetched={} from {} shard(s)", orders.size(), perShard.size());
         return orders;
     }
-}
\ No newline at end of file
+
+    // Merges one shard's hot and archived orders. The archive is read second, so an order moved
+    // in between shows up in both and is kept once rather than missed
+    private static List<OrderEntity> withArchived(List<OrderEntity> hot, Supplier<List<OrderEntity>> archive) {
+        if (archive == null) {
+            return hot;
+        }
+        List<OrderEntity> archived = archive.get();
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        Set<Long> hotIds = hot.stream().map(OrderEntity::getId).collect(Collectors.toSet());
+        List<OrderEntity> cold = archived.stream().filter(order -> !hotIds.contains(order.getId())).toList();
+        return OrderShards.mergeSorted(List.of(hot, cold), NEWEST_FIRST);
+    }
+}
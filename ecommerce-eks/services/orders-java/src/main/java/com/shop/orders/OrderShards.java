@@ -0,0 +1,293 @@
+package com.shop.orders;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Shard placement for orders. Shard 0 is spring.datasource.url; orders.sharding.additional-urls
+ * adds shards 1..N-1, in order, and new shards must only ever be appended. A user's new orders,
+ * items, sagas and summary updates go to the shard picked by a consistent hash of the userId.
+ * Row ids carry their shard in the bits above {@link #SHARD_SHIFT}, so an order id alone
+ * routes to its shard.
+ *
+ * <p>Rows are never moved: their ids pin them to the shard that wrote them. Appending a
+ * shard moves about 1/N of users to it for new writes, while their older rows stay where
+ * they were. Every shard count the ring has had before is listed in
+ * orders.sharding.previous-shard-counts, and user-keyed reads use {@link #shardsForUser},
+ * which includes the user's shard under each of those earlier rings.
+ *
+ * <p>JPA code picks a shard by running inside {@link #on}; the routing DataSource reads it
+ * when a transaction opens its connection.
+ */
+@Component
+public class OrderShards {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderShards.class);
+
+    // 2^40 ids per shard; shard 0 keeps the ids it had before sharding
+    public static final int SHARD_SHIFT = 40;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final List<HikariDataSource> dataSources = new ArrayList<>();
+    private final TreeMap<Long, Integer> ring;
+    // One ring per earlier shard count, for reading rows written before shards were appended
+    private final List<TreeMap<Long, Integer>> previousRings = new ArrayList<>();
+    private final ExecutorService scatterExecutor;
+    private final ContextSnapshotFactory snapshots = ContextSnapshotFactory.builder().build();
+
+    public OrderShards(DataSourceProperties dataSourceProperties,
+                       Environment environment,
+                       @Value("${orders.sharding.additional-urls:}") List<String> additionalUrls,
+                       @Value("${orders.sharding.previous-shard-counts:}") List<Integer> previousShardCounts,
+                       @Value("${orders.sharding.pool-size:0}") int poolSize,
+                       @Value("${orders.sharding.virtual-nodes:128}") int virtualNodes,
+                       MeterRegistry meterRegistry) {
+        List<String> urls = new ArrayList<>();
+        urls.add(dataSourceProperties.determineUrl());
+        additionalUrls.stream().map(String::trim).filter(url -> !url.isEmpty()).forEach(urls::add);
+
+        var metrics = new MicrometerMetricsTrackerFactory(meterRegistry);
+        Binder binder = Binder.get(environment);
+        for (int shard = 0; shard < urls.size(); shard++) {
+            HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .build();
+            // Same spring.datasource.hikari.* settings Boot would apply to a single pool
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+            dataSource.setJdbcUrl(urls.get(shard));
+            dataSource.setPoolName("orders-shard-" + shard);
+            if (poolSize > 0) {
+                dataSource.setMaximumPoolSize(poolSize);
+            }
+            dataSource.setMetricsTrackerFactory(metrics);
+            dataSources.add(dataSource);
+        }
+
+        this.ring = ring(urls.size(), virtualNodes);
+        for (int count : previousShardCounts) {
+            if (count < 1 || count >= urls.size()) {
+                throw new IllegalArgumentException("orders.sharding.previous-shard-counts entry " + count
+                        + " must be between 1 and " + (urls.size() - 1));
+            }
+            previousRings.add(ring(count, virtualNodes));
+        }
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.scatterExecutor = urls.size() > 1
+                ? Executors.newFixedThreadPool(urls.size() * 2, r -> {
+                    Thread t = new Thread(r, "orders-shard-scatter-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+        logger.info("Orders sharding configured with {} shard(s)", urls.size());
+    }
+
+    public int count() {
+        return dataSources.size();
+    }
+
+    public List<? extends DataSource> dataSources() {
+        return dataSources;
+    }
+
+    /** Shard that new rows for this user are written to. */
+    public int shardForUser(long userId) {
+        if (dataSources.size() == 1) {
+            return 0;
+        }
+        return place(ring, userId);
+    }
+
+    /**
+     * Every shard that may hold rows for this user, current shard first: the user's shard
+     * under the current ring and under each earlier one. Usually just one.
+     */
+    public List<Integer> shardsForUser(long userId) {
+        int current = place(ring, userId);
+        if (previousRings.isEmpty()) {
+            return List.of(current);
+        }
+        List<Integer> shards = new ArrayList<>(previousRings.size() + 1);
+        shards.add(current);
+        for (TreeMap<Long, Integer> previous : previousRings) {
+            int shard = place(previous, userId);
+            if (!shards.contains(shard)) {
+                shards.add(shard);
+            }
+        }
+        return shards;
+    }
+
+    public int shardOfId(long id) {
+        int shard = (int) (id >>> SHARD_SHIFT);
+        if (shard >= dataSources.size()) {
+            throw new IllegalArgumentException("Id " + id + " belongs to unknown shard " + shard);
+        }
+        return shard;
+    }
+
+    public static long idBase(int shard) {
+        return (long) shard << SHARD_SHIFT;
+    }
+
+    /** Shard the current thread's JPA work is routed to; 0 outside any {@link #on} scope. */
+    static int current() {
+        Integer shard = CURRENT.get();
+        return shard != null ? shard : 0;
+    }
+
+    public <T> T on(int shard, Supplier<T> work) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public void on(int shard, Runnable work) {
+        on(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /** Runs {@code work} once per shard, in parallel, and returns the results in shard order. */
+    public <T> List<T> scatter(IntFunction<T> work) {
+        if (scatterExecutor == null) {
+            return List.of(on(0, () -> work.apply(0)));
+        }
+        var snapshot = snapshots.captureAll();
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (int shard = 0; shard < dataSources.size(); shard++) {
+            int s = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try (var scope = snapshot.setThreadLocals()) {
+                    return on(s, () -> work.apply(s));
+                }
+            }, scatterExecutor));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+        return results;
+    }
+
+    /** Runs {@code work} on each shard in turn, for background jobs. */
+    public void forEach(IntConsumer work) {
+        for (int shard = 0; shard < dataSources.size(); shard++) {
+            int s = shard;
+            on(s, () -> work.accept(s));
+        }
+    }
+
+    /** k-way merge of per-shard lists that are each already sorted by {@code order}. */
+    public static <T> List<T> mergeSorted(List<List<T>> sortedLists, Comparator<? super T> order) {
+        record Cursor<T>(List<T> list, int index) {
+            T head() {
+                return list.get(index);
+            }
+        }
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(
+                Math.max(1, sortedLists.size()), (a, b) -> order.compare(a.head(), b.head()));
+        int total = 0;
+        for (List<T> list : sortedLists) {
+            total += list.size();
+            if (!list.isEmpty()) {
+                heads.add(new Cursor<>(list, 0));
+            }
+        }
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            Cursor<T> cursor = heads.poll();
+            merged.add(cursor.head());
+            if (cursor.index() + 1 < cursor.list().size()) {
+                heads.add(new Cursor<>(cursor.list(), cursor.index() + 1));
+            }
+        }
+        return merged;
+    }
+
+    @PreDestroy
+    void close() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdownNow();
+        }
+        dataSources.forEach(HikariDataSource::close);
+    }
+
+    // Virtual nodes depend only on the shard number, so a larger ring keeps every smaller ring's nodes
+    private static TreeMap<Long, Integer> ring(int shardCount, int virtualNodes) {
+        TreeMap<Long, Integer> ring = new TreeMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                ring.put(hash(("shard-" + shard + "#" + v).getBytes(StandardCharsets.UTF_8)), shard);
+            }
+        }
+        return ring;
+    }
+
+    private static int place(TreeMap<Long, Integer> ring, long userId) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(mix(userId));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    // FNV-1a followed by the splitmix64 finalizer, for an even spread of virtual nodes
+    private static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,10 +1,22 @@
 package com.shop.orders;
 
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import static com.shop.orders.OrderDtos.CreateOrderRequest;
 import static com.shop.orders.OrderDtos.OrderResponse;
+import static com.shop.orders.OrderDtos.OrderRollupResponse;
+import static com.shop.orders.OrderDtos.UserOrderSummaryResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,9 +28,13 @@ public class OrdersController {
     private static final Logger logger = LoggerFactory.getLogger(OrdersController.class);
 
     private final OrderService orderService;
+    private final OrderRollups orderRollups;
+    private final OrderJournal orderJournal;
 
-    public OrdersController(OrderService orderService) {
+    public OrdersController(OrderService orderService, OrderRollups orderRollups, OrderJournal orderJournal) {
         this.orderService = orderService;
+        this.orderRollups = orderRollups;
+        this.orderJournal = orderJournal;
     }
 
     @GetMapping({"/health", "/orders/health"})
@@ -34,7 +50,7 @@ public class OrdersController {
     @ResponseStatus(HttpStatus.CREATED)
     public OrderResponse createOrder(@RequestBody CreateOrderRequest request) {
         logger.info("Received createOrder request for userId={} amount={}",
-                request.userId(), request.amount());
+                request.userId(), request.payment() != null ? request.payment().amount() : null);
 
         var order = orderService.createOrder(request);
 
@@ -44,10 +60,11 @@ public class OrdersController {
         return OrderResponse.fromEntity(order);
     }
 
+    // Archived orders (older than orders.archive.retention-days) only with includeArchived=true
     @GetMapping
-    public java.util.List<OrderResponse> getAllOrders() {
+    public java.util.List<OrderResponse> getAllOrders(@RequestParam(defaultValue = "false") boolean includeArchived) {
         logger.info("Fetching all orders");
-        var orders = orderService.getAllOrders();
+        var orders = orderService.getAllOrders(includeArchived);
         logger.info("Fetched {} orders", orders.size());
         return orders.stream()
                 .map(OrderResponse::fromEntity)
@@ -63,14 +80,88 @@ public class OrdersController {
     }
 
     @GetMapping("/user/{userId}")
-    public java.util.List<OrderResponse> getOrdersByUserId(@PathVariable Long userId) {
+    public java.util.List<OrderResponse> getOrdersByUserId(@PathVariable Long userId,
+                                                           @RequestParam(defaultValue = "true") boolean includeArchived,
+                                                           ServletWebRequest webRequest) {
         logger.info("Fetching orders for userId={}", userId);
 
-        var orders = orderService.getOrdersByUserId(userId);
+        // Answer 304 from the version tag alone, before loading any orders
+        if (ConditionalGet.checkNotModified(webRequest, orderService.getOrdersVersionTag(userId, includeArchived))) {
+            logger.debug("Orders not modified for userId={}", userId);
+            return null;
+        }
+
+        var orders = orderService.getOrdersByUserId(userId, includeArchived);
         logger.info("Fetched {} orders for userId={}", orders.size(), userId);
         return orders.stream()
                 .map(OrderResponse::fromEntity)
                 .toList();
     }
 
-}
\ No newline at end of file
+    @GetMapping("/rollups")
+    public java.util.List<OrderRollupResponse> getRollups(
+            @RequestParam(defaultValue = "MINUTE") RollupGranularity granularity,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(granularity.bucketSize().multipliedBy(60));
+        logger.info("Fetching {} rollups from={} to={}", granularity, start, end);
+        return orderRollups.getRollups(granularity, start, end);
+    }
+
+    @GetMapping("/user/{userId}/summary")
+    public UserOrderSummaryResponse getUserSummary(@PathVariable Long userId) {
+        logger.info("Fetching order summary for userId={}", userId);
+        return orderRollups.getUserSummary(userId)
+                .orElseGet(() -> UserOrderSummaryResponse.empty(userId));
+    }
+
+    /**
+     * Bulk replay of the order journal for out-of-process consumers. The body is a sequence
+     * of {@code [int32 length][payload]} frames (see OrderJournalEvent for the payload);
+     * continue from the X-Journal-Next-Offset response header.
+     *
+     * <p>Each instance journals only the orders it handled, and offsets are local to that
+     * instance's files, so replay is only meaningful on a single node with a persistent
+     * journal dir. It is disabled (404) unless orders.journal.enabled is set.
+     */
+    @GetMapping(value = "/journal", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void readJournal(@RequestParam(defaultValue = "0") long from,
+                            @RequestParam(defaultValue = "1000") int limit,
+                            HttpServletResponse response) throws IOException {
+        if (!orderJournal.isEnabled()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Order journal is disabled");
+            return;
+        }
+        List<ByteBuffer> payloads = new ArrayList<>();
+        OrderJournal.Tailer tailer;
+        try {
+            tailer = orderJournal.tail(from);
+            tailer.poll((offset, payload) -> payloads.add(payload), Math.min(Math.max(limit, 1), 10_000));
+        } catch (OrderJournal.NotRetainedException ex) {
+            // Retention already deleted these records; the consumer must restart from the oldest
+            response.setHeader("X-Journal-First-Offset", Long.toString(orderJournal.firstOffset()));
+            response.sendError(HttpServletResponse.SC_GONE, ex.getMessage());
+            return;
+        } catch (IllegalArgumentException ex) {
+            // Past the end or not a record boundary
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+            return;
+        }
+
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader("X-Journal-Next-Offset", Long.toString(tailer.offset()));
+        response.setHeader("X-Journal-End-Offset", Long.toString(orderJournal.endOffset()));
+
+        // Frames are streamed straight from the mapped segments, without staging them in the heap
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        for (ByteBuffer payload : payloads) {
+            length.clear();
+            length.putInt(payload.remaining()).flip();
+            out.write(length);
+            out.write(payload);
+        }
+        response.flushBuffer();
+    }
+}
@@ -13,8 +13,9 @@ public class PaymentClient {
     private final String baseUrl;
 
     public PaymentClient(RestTemplateBuilder builder,
-                         @Value("${payment.base-url:http://payments:8000}") String baseUrl) {
-        this.restTemplate = builder.build();
+                         @Value("${payment.base-url:http://payments:8000}") String baseUrl,
+                         @Value("${clients.wire-format:json}") String wireFormat) {
+        this.restTemplate = WireFormat.from(wireFormat).apply(builder).build();
         this.baseUrl = baseUrl;
     }
 
@@ -47,4 +48,21 @@ public class PaymentClient {
             throw new RuntimeException("Failed to call payment service", ex);
         }
     }
-}
\ No newline at end of file
+
+    public record RefundRequest(String reason) {
+    }
+
+    /** Refunds (or voids) an approved charge; the payment service treats repeats as no-ops. */
+    public PaymentResponse refund(String transactionId, String reason) {
+        try {
+            return restTemplate.postForObject(
+                    baseUrl + "/api/payments/{transactionId}/refund",
+                    new RefundRequest(reason),
+                    PaymentResponse.class,
+                    transactionId
+            );
+        } catch (RestClientException ex) {
+            throw new RuntimeException("Failed to call payment service (refund)", ex);
+        }
+    }
+}
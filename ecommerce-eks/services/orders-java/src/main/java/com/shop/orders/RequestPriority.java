@@ -0,0 +1,32 @@
+package com.shop.orders;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Admission classes for /api/orders, highest first. Under overload BULK is shed
+ * first, then NORMAL; order creation is only rejected once it cannot be queued.
+ */
+public enum RequestPriority {
+
+    // Revenue path: order creation
+    CRITICAL,
+    // Single-order and per-user reads
+    NORMAL,
+    // Unbounded listings, rollups and journal replay
+    BULK;
+
+    public static RequestPriority classify(HttpServletRequest request) {
+        String method = request.getMethod();
+        String path = request.getRequestURI();
+        if ("POST".equals(method) && (path.equals("/api/orders") || path.equals("/api/orders/"))) {
+            return CRITICAL;
+        }
+        if ("GET".equals(method) && (path.equals("/api/orders")
+                || path.equals("/api/orders/")
+                || path.startsWith("/api/orders/rollups")
+                || path.startsWith("/api/orders/journal"))) {
+            return BULK;
+        }
+        return NORMAL;
+    }
+}
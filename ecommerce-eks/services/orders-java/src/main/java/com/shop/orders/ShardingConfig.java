@@ -0,0 +1,122 @@
+package com.shop.orders;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes JPA through the order shards. Hibernate's schema management (ddl-auto) runs
+ * against shard 0 while the EntityManagerFactory boots; {@link ShardSchemaInitializer}
+ * replays the same action on every other shard afterwards.
+ */
+@Configuration
+public class ShardingConfig {
+
+    @Bean
+    public DataSource dataSource(OrderShards shards) {
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    public MetadataCapture hibernateMetadataCapture() {
+        return new MetadataCapture();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardMetadataIntegrator(MetadataCapture capture) {
+        return properties -> properties.put("hibernate.integrator_provider",
+                (IntegratorProvider) () -> List.of(capture));
+    }
+
+    /** Keeps the boot-time mapping metadata so the schema tool can be rerun per shard. */
+    public static class MetadataCapture implements Integrator {
+
+        private volatile Metadata metadata;
+
+        @Override
+        public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                              SessionFactoryImplementor sessionFactory) {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory,
+                                 SessionFactoryServiceRegistry serviceRegistry) {
+        }
+
+        Metadata metadata() {
+            return metadata;
+        }
+    }
+
+    @Component
+    static class ShardSchemaInitializer {
+
+        private static final Logger logger = LoggerFactory.getLogger(ShardSchemaInitializer.class);
+
+        // Tables whose IDENTITY ids must carry the shard, with the ids already handed out;
+        // archived orders keep their ids, so they count too
+        private static final Map<String, String> SHARDED_ID_TABLES = Map.of(
+                "orders", "select greatest((select coalesce(max(id), 0) from orders),"
+                        + " (select coalesce(max(id), 0) from orders_archive))",
+                "order_items", "select coalesce(max(id), 0) from order_items",
+                "order_sagas", "select coalesce(max(id), 0) from order_sagas");
+
+        private final EntityManagerFactory entityManagerFactory;
+        private final OrderShards shards;
+        private final MetadataCapture metadataCapture;
+
+        ShardSchemaInitializer(EntityManagerFactory entityManagerFactory,
+                               OrderShards shards,
+                               MetadataCapture metadataCapture) {
+            this.entityManagerFactory = entityManagerFactory;
+            this.shards = shards;
+            this.metadataCapture = metadataCapture;
+        }
+
+        @PostConstruct
+        void initializeShards() {
+            if (shards.count() == 1) {
+                return;
+            }
+            SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+            Map<String, Object> settings = new HashMap<>(sessionFactory.getProperties());
+            for (int shard = 1; shard < shards.count(); shard++) {
+                shards.on(shard, () -> SchemaManagementToolCoordinator.process(
+                        metadataCapture.metadata(), sessionFactory.getServiceRegistry(), settings, action -> {}));
+                alignIdRange(shard);
+                logger.info("Order shard {} schema ready", shard);
+            }
+        }
+
+        // Starts the shard's auto-increment counters at its id base; a no-op once ids are in range
+        private void alignIdRange(int shard) {
+            JdbcTemplate jdbc = new JdbcTemplate(shards.dataSources().get(shard));
+            long base = OrderShards.idBase(shard);
+            SHARDED_ID_TABLES.forEach((table, maxIdQuery) -> {
+                Long maxId = jdbc.queryForObject(maxIdQuery, Long.class);
+                if (maxId == null || maxId < base) {
+                    jdbc.execute("alter table " + table + " auto_increment = " + (base + 1));
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.shop.orders;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical reads: the first caller for a key runs the loader,
+ * every other caller for the same key waits for and shares that result.
+ * A completed result keeps being shared for {@code window} (zero = in-flight only).
+ */
+public class SingleFlight<K, V> {
+
+    // Expired entries are swept once the map grows past this size
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    private final ConcurrentHashMap<K, Call<V>> calls = new ConcurrentHashMap<>();
+    private final long windowNanos;
+    private final Counter executed;
+    private final Counter shared;
+
+    public SingleFlight(String client, Duration window, MeterRegistry registry) {
+        this.windowNanos = Math.max(0, window.toNanos());
+        this.executed = Counter.builder("orders.client.singleflight.calls")
+                .tag("client", client)
+                .tag("outcome", "executed")
+                .register(registry);
+        this.shared = Counter.builder("orders.client.singleflight.calls")
+                .tag("client", client)
+                .tag("outcome", "shared")
+                .register(registry);
+        Gauge.builder("orders.client.singleflight.dedup.ratio", this, SingleFlight::dedupRatio)
+                .tag("client", client)
+                .description("Fraction of reads served by another caller's in-flight request")
+                .register(registry);
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        while (true) {
+            long now = System.nanoTime();
+            Call<V> existing = calls.get(key);
+            if (existing != null && !existing.isExpired(now)) {
+                shared.increment();
+                return existing.join();
+            }
+
+            Call<V> call = new Call<>();
+            boolean leader = existing == null
+                    ? calls.putIfAbsent(key, call) == null
+                    : calls.replace(key, existing, call);
+            if (!leader) {
+                // Lost the race to another caller; retry and share its call
+                continue;
+            }
+
+            executed.increment();
+            try {
+                V value = loader.get();
+                call.complete(value, System.nanoTime() + windowNanos);
+                return value;
+            } catch (RuntimeException | Error ex) {
+                call.fail(ex);
+                throw ex;
+            } finally {
+                if (windowNanos == 0 || call.failed) {
+                    calls.remove(key, call);
+                } else if (calls.size() > SWEEP_THRESHOLD) {
+                    long sweepAt = System.nanoTime();
+                    calls.values().removeIf(c -> c.isExpired(sweepAt));
+                }
+            }
+        }
+    }
+
+    double dedupRatio() {
+        double total = executed.count() + shared.count();
+        return total == 0 ? 0.0 : shared.count() / total;
+    }
+
+    private static final class Call<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+        private volatile boolean failed;
+
+        void complete(V value, long expiresAt) {
+            this.expiresAt = expiresAt;
+            future.complete(value);
+        }
+
+        void fail(Throwable ex) {
+            failed = true;
+            future.completeExceptionally(ex);
+        }
+
+        boolean isExpired(long now) {
+            return failed || (expiresAt != Long.MAX_VALUE && now - expiresAt >= 0);
+        }
+
+        V join() {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (ex.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw ex;
+            }
+        }
+    }
+}
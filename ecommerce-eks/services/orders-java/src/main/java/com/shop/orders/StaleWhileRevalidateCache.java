@@ -0,0 +1,107 @@
+package com.shop.orders;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived cache for reads that tolerate bounded staleness. Within {@code fresh}
+ * a value is served as-is; up to {@code fresh + stale} it is still served, but one
+ * background refresh is started; beyond that the caller loads synchronously.
+ */
+public class StaleWhileRevalidateCache<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaleWhileRevalidateCache.class);
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final long freshNanos;
+    private final long maxAgeNanos;
+    private final Counter fresh;
+    private final Counter stale;
+    private final Counter miss;
+
+    public StaleWhileRevalidateCache(String client, Executor executor, Duration fresh, Duration stale,
+                                     MeterRegistry registry) {
+        this.executor = executor;
+        this.freshNanos = fresh.toNanos();
+        this.maxAgeNanos = fresh.toNanos() + stale.toNanos();
+        this.fresh = counter(registry, client, "fresh");
+        this.stale = counter(registry, client, "stale");
+        this.miss = counter(registry, client, "miss");
+    }
+
+    private static Counter counter(MeterRegistry registry, String client, String result) {
+        return Counter.builder("orders.client.swr.reads")
+                .tag("client", client)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    public V get(K key, Supplier<V> loader) {
+        long now = System.nanoTime();
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            long age = now - entry.loadedAt;
+            if (age < freshNanos) {
+                fresh.increment();
+                return entry.value;
+            }
+            if (age < maxAgeNanos) {
+                stale.increment();
+                revalidate(key, entry, loader);
+                return entry.value;
+            }
+        }
+        miss.increment();
+        V value = loader.get();
+        put(key, value);
+        return value;
+    }
+
+    public void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime()));
+        if (entries.size() > SWEEP_THRESHOLD) {
+            long now = System.nanoTime();
+            entries.values().removeIf(e -> now - e.loadedAt >= maxAgeNanos);
+        }
+    }
+
+    private void revalidate(K key, Entry<V> entry, Supplier<V> loader) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    put(key, loader.get());
+                } catch (RuntimeException ex) {
+                    entry.refreshing.set(false);
+                    logger.warn("Background refresh failed for key={}", key, ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAt;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
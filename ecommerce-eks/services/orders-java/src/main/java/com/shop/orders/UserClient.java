@@ -1,20 +1,40 @@
 package com.shop.orders;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @Component
 public class UserClient {
 
     private final RestTemplate restTemplate;
     private final String baseUrl;
+    private final SingleFlight<Long, UserResponse> userReads;
+    private final int batchMaxIds;
 
     public UserClient(RestTemplateBuilder builder,
-                      @Value("${users.base-url:http://users:8080}") String baseUrl) {
-        this.restTemplate = builder.build();
+                      @Value("${users.base-url:http://users:8080}") String baseUrl,
+                      @Value("${clients.wire-format:json}") String wireFormat,
+                      @Value("${clients.single-flight.window-ms:0}") long singleFlightWindowMs,
+                      @Value("${users.batch.max-ids:100}") int batchMaxIds,
+                      MeterRegistry meterRegistry) {
+        this.restTemplate = WireFormat.from(wireFormat).apply(builder).build();
         this.baseUrl = baseUrl;
+        this.userReads = new SingleFlight<>("users", Duration.ofMillis(singleFlightWindowMs), meterRegistry);
+        this.batchMaxIds = batchMaxIds;
     }
 
     public record UserResponse(
@@ -29,9 +49,39 @@ public class UserClient {
     ) {}
 
     public UserResponse getUser(Long userId) {
+        // Retries and concurrent orders for the same user share one users-service call
+        return userReads.execute(userId, () -> fetchUser(userId));
+    }
+
+    private UserResponse fetchUser(Long userId) {
         return restTemplate.getForObject(
                 baseUrl + "/api/users/" + userId,
                 UserResponse.class
         );
     }
+
+    /**
+     * Looks up many users with one call per batch of ids (users-service caps a batch).
+     * Ids that don't exist are absent from the result.
+     */
+    public Map<Long, UserResponse> getUsers(Collection<Long> userIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Map<Long, UserResponse> users = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += batchMaxIds) {
+            String batch = ids.subList(from, Math.min(from + batchMaxIds, ids.size())).stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(","));
+            Map<Long, UserResponse> found = restTemplate.exchange(
+                    baseUrl + "/api/users?ids={ids}",
+                    HttpMethod.GET,
+                    null,
+                    new ParameterizedTypeReference<Map<Long, UserResponse>>() {},
+                    batch
+            ).getBody();
+            if (found != null) {
+                users.putAll(found);
+            }
+        }
+        return users;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.shop.orders;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Per-user order totals, maintained incrementally by OrderRollups.
+ */
+@Entity
+@Table(name = "user_order_summaries")
+public class UserOrderSummaryEntity {
+
+    @Id
+    private Long userId;
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    @Column(nullable = false)
+    private long itemCount;
+
+    @Column(nullable = false)
+    private Instant lastOrderAt;
+
+    public UserOrderSummaryEntity() {
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public Instant getLastOrderAt() {
+        return lastOrderAt;
+    }
+}
@@ -0,0 +1,54 @@
+package com.shop.orders;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface UserOrderSummaryRepository extends JpaRepository<UserOrderSummaryEntity, Long> {
+
+    @Modifying
+    @Query(value = """
+            insert into user_order_summaries (user_id, order_count, item_count, last_order_at)
+            values (:userId, 1, :itemCount, :createdAt)
+            on duplicate key update order_count = order_count + 1,
+                                    item_count = item_count + :itemCount,
+                                    last_order_at = greatest(last_order_at, :createdAt)
+            """, nativeQuery = true)
+    void increment(@Param("userId") Long userId,
+                   @Param("itemCount") int itemCount,
+                   @Param("createdAt") Instant createdAt);
+
+    /**
+     * Recomputes the summaries of users with no order since {@code cutoff}; the others are
+     * left to the incremental path until a later rebuild. A user who orders while this
+     * runs is either excluded by the having clause, or the new order is missing from
+     * the totals and its increment lands on top of them. If that increment already
+     * moved last_order_at past the cutoff, the row is kept as is rather than overwritten.
+     * last_order_at is assigned last, so the earlier conditions still see the old value.
+     */
+    @Modifying
+    @Query(value = """
+            insert into user_order_summaries (user_id, order_count, item_count, last_order_at)
+            select * from (
+                select t.user_id, count(*) as order_count, sum(t.item_count) as item_count,
+                       max(t.created_at) as last_order_at
+                from (
+                    select o.user_id, o.created_at, coalesce(sum(i.quantity), 0) as item_count
+                    from orders o left join order_items i on i.order_id = o.id
+                    group by o.id, o.user_id, o.created_at
+                    union all
+                    select a.user_id, a.created_at, a.item_count from orders_archive a
+                ) t
+                group by t.user_id
+                having max(t.created_at) < :cutoff
+            ) rebuilt
+            on duplicate key update
+                order_count = if(user_order_summaries.last_order_at < :cutoff, rebuilt.order_count, user_order_summaries.order_count),
+                item_count = if(user_order_summaries.last_order_at < :cutoff, rebuilt.item_count, user_order_summaries.item_count),
+                last_order_at = if(user_order_summaries.last_order_at < :cutoff, rebuilt.last_order_at, user_order_summaries.last_order_at)
+            """, nativeQuery = true)
+    int rebuildSettled(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,29 @@
+package com.shop.orders;
+
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Response encoding the clients ask downstream services for.
+ * CBOR is only requested via Accept; services that don't support it answer JSON,
+ * which the RestTemplate still parses. Request bodies are always sent as JSON.
+ */
+public enum WireFormat {
+
+    JSON("application/json"),
+    CBOR("application/cbor, application/json;q=0.9");
+
+    private final String accept;
+
+    WireFormat(String accept) {
+        this.accept = accept;
+    }
+
+    public static WireFormat from(String value) {
+        return value != null && value.equalsIgnoreCase("cbor") ? CBOR : JSON;
+    }
+
+    public RestTemplateBuilder apply(RestTemplateBuilder builder) {
+        return builder.defaultHeader(HttpHeaders.ACCEPT, accept);
+    }
+}
@@ -0,0 +1,219 @@
+package com.shop.orders;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionGateTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long TARGET = 20 * MS;
+    private static final long INTERVAL = 100 * MS;
+    // Real time a waiter may block; the manual clock decides the delay it reports
+    private static final long LONG_WAIT = TimeUnit.SECONDS.toNanos(10);
+
+    private final AtomicLong clock = new AtomicLong(1_000 * MS);
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    @AfterEach
+    void stopWaiters() {
+        waiters.forEach(waiter -> waiter.thread.interrupt());
+    }
+
+    @Test
+    void eachClassIsLimitedToItsShare() {
+        AdmissionGate gate = gate(10, 0.8, 0.4);
+
+        assertThat(acquireAll(gate, RequestPriority.BULK, 5)).containsExactly(0L, 0L, 0L, 0L, -1L);
+        assertThat(acquireAll(gate, RequestPriority.NORMAL, 5)).containsExactly(0L, 0L, 0L, 0L, -1L);
+        assertThat(acquireAll(gate, RequestPriority.CRITICAL, 3)).containsExactly(0L, 0L, -1L);
+        assertThat(gate.inFlight()).isEqualTo(10);
+    }
+
+    @Test
+    void freedPermitGoesToTheHighestPriorityWaiter() throws Exception {
+        AdmissionGate gate = gate(2, 1.0, 1.0);
+        acquireAll(gate, RequestPriority.CRITICAL, 2);
+
+        Waiter bulk = waiter(gate, RequestPriority.BULK);
+        Waiter normal = waiter(gate, RequestPriority.NORMAL);
+        Waiter critical = waiter(gate, RequestPriority.CRITICAL);
+
+        gate.release();
+        assertThat(critical.delay()).isGreaterThanOrEqualTo(0);
+        assertThat(normal.isQueued()).isTrue();
+        assertThat(bulk.isQueued()).isTrue();
+
+        gate.release();
+        assertThat(normal.delay()).isGreaterThanOrEqualTo(0);
+        assertThat(bulk.isQueued()).isTrue();
+
+        gate.release();
+        assertThat(bulk.delay()).isGreaterThanOrEqualTo(0);
+        assertThat(gate.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void waitingHigherClassBlocksLowerClassArrivals() throws Exception {
+        // Bulk may use more permits than normal here, so a permit is free while normal queues
+        AdmissionGate gate = gate(4, 0.5, 1.0);
+        acquireAll(gate, RequestPriority.NORMAL, 2);
+        Waiter normal = waiter(gate, RequestPriority.NORMAL);
+
+        assertThat(gate.acquire(RequestPriority.BULK, 0)).isEqualTo(-1);
+        assertThat(gate.acquire(RequestPriority.CRITICAL, 0)).isZero();
+
+        // The normal waiter only gets a permit once normal is back under its share
+        gate.release();
+        assertThat(normal.isQueued()).isTrue();
+        gate.release();
+        assertThat(normal.delay()).isGreaterThanOrEqualTo(0);
+        assertThat(gate.acquire(RequestPriority.BULK, 0)).isZero();
+    }
+
+    @Test
+    void queueingDelayIsMeasuredOnTheClock() throws Exception {
+        AdmissionGate gate = gate(1, 1.0, 1.0);
+        acquireAll(gate, RequestPriority.CRITICAL, 1);
+        Waiter waiter = waiter(gate, RequestPriority.CRITICAL);
+
+        clock.addAndGet(35 * MS);
+        gate.release();
+
+        assertThat(waiter.delay()).isEqualTo(35 * MS);
+    }
+
+    @Test
+    void waiterThatRunsOutOfTimeIsShed() {
+        AdmissionGate gate = gate(1, 1.0, 1.0);
+        acquireAll(gate, RequestPriority.CRITICAL, 1);
+
+        assertThat(gate.acquire(RequestPriority.CRITICAL, MS)).isEqualTo(-1);
+        assertThat(gate.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void minimumDelayAboveTargetMarksOverloadUntilAnIntervalDrains() throws Exception {
+        AdmissionGate gate = gate(1, 1.0, 1.0);
+        gate.acquire(RequestPriority.CRITICAL, 0);
+        clock.addAndGet(INTERVAL);
+
+        // Every admission in this interval queued longer than the target
+        handOver(gate, 25 * MS);
+        handOver(gate, 40 * MS);
+        assertThat(gate.isOverloaded()).as("interval has not ended yet").isFalse();
+
+        clock.addAndGet(INTERVAL);
+        gate.release();
+        assertThat(gate.acquire(RequestPriority.CRITICAL, 0)).isZero();
+        assertThat(gate.isOverloaded()).isTrue();
+
+        // That interval admitted without queueing, so the standing queue is gone
+        gate.release();
+        clock.addAndGet(INTERVAL);
+        gate.acquire(RequestPriority.CRITICAL, 0);
+        assertThat(gate.isOverloaded()).isFalse();
+    }
+
+    @Test
+    void oneFastAdmissionInTheIntervalMeansNoStandingQueue() throws Exception {
+        AdmissionGate gate = gate(1, 1.0, 1.0);
+        gate.acquire(RequestPriority.CRITICAL, 0);
+        clock.addAndGet(INTERVAL);
+
+        handOver(gate, 50 * MS);
+        handOver(gate, 5 * MS);
+        clock.addAndGet(INTERVAL);
+        gate.release();
+        gate.acquire(RequestPriority.CRITICAL, 0);
+
+        assertThat(gate.isOverloaded()).isFalse();
+    }
+
+    @Test
+    void intervalWithOnlyRejectionsIsOverloaded() {
+        AdmissionGate gate = gate(1, 1.0, 1.0);
+        gate.acquire(RequestPriority.CRITICAL, 0);
+        clock.addAndGet(INTERVAL);
+        assertThat(gate.acquire(RequestPriority.CRITICAL, 0)).isEqualTo(-1);
+
+        clock.addAndGet(INTERVAL);
+        assertThat(gate.acquire(RequestPriority.CRITICAL, 0)).isEqualTo(-1);
+        assertThat(gate.isOverloaded()).isTrue();
+    }
+
+    @Test
+    void idleIntervalIsNotOverloaded() {
+        AdmissionGate gate = gate(1, 1.0, 1.0);
+
+        clock.addAndGet(5 * INTERVAL);
+        assertThat(gate.acquire(RequestPriority.CRITICAL, 0)).isZero();
+
+        assertThat(gate.isOverloaded()).isFalse();
+    }
+
+    private AdmissionGate gate(int maxConcurrent, double normalShare, double bulkShare) {
+        return new AdmissionGate(maxConcurrent, normalShare, bulkShare, TARGET, INTERVAL, clock::get);
+    }
+
+    private static List<Long> acquireAll(AdmissionGate gate, RequestPriority priority, int count) {
+        List<Long> delays = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            delays.add(gate.acquire(priority, 0));
+        }
+        return delays;
+    }
+
+    // With the gate's only permit held, queues a request for queuedNanos and hands the permit to it
+    private void handOver(AdmissionGate gate, long queuedNanos) throws Exception {
+        Waiter waiter = waiter(gate, RequestPriority.CRITICAL);
+        clock.addAndGet(queuedNanos);
+        gate.release();
+        assertThat(waiter.delay()).isEqualTo(queuedNanos);
+    }
+
+    private Waiter waiter(AdmissionGate gate, RequestPriority priority) throws InterruptedException {
+        Waiter waiter = new Waiter(gate, priority);
+        waiters.add(waiter);
+        waiter.awaitQueued();
+        return waiter;
+    }
+
+    private static final class Waiter {
+        final FutureTask<Long> result;
+        final Thread thread;
+
+        Waiter(AdmissionGate gate, RequestPriority priority) {
+            this.result = new FutureTask<>(() -> gate.acquire(priority, LONG_WAIT));
+            this.thread = new Thread(result, "admission-waiter-" + priority);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        // A queued waiter is parked on its class's condition
+        void awaitQueued() throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (thread.getState() != Thread.State.TIMED_WAITING) {
+                assertThat(System.nanoTime()).as("waiter never queued").isLessThan(deadline);
+                Thread.sleep(1);
+            }
+        }
+
+        boolean isQueued() throws InterruptedException {
+            // Give a wrongly signalled waiter the chance to finish before checking
+            Thread.sleep(20);
+            return !result.isDone();
+        }
+
+        long delay() throws Exception {
+            return result.get(5, TimeUnit.SECONDS);
+        }
+    }
+}
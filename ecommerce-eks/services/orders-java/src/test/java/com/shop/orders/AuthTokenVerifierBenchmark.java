@@ -0,0 +1,88 @@
+package com.shop.orders;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of verifying one Bearer token, i.e. the per-request work AuthTokenFilter adds.
+ * Tokens are signed here the same way users-service's AuthTokenIssuer does.
+ * Add {@code -prof gc} to see allocation per verification.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthTokenVerifierBenchmark {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(
+            "benchmark-secret-0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+
+    private AuthTokenVerifier verifier;
+    private String validToken;
+    private String forgedToken;
+    private String unknownKeyToken;
+
+    @Setup
+    public void setUp() throws Exception {
+        verifier = new AuthTokenVerifier("old:" + SECRET + ",bench:" + SECRET);
+        long now = System.currentTimeMillis() / 1000;
+        validToken = sign("bench", 42L, now, now + 3600);
+        forgedToken = validToken.substring(0, validToken.length() - 2) + "AA";
+        unknownKeyToken = "other" + validToken.substring(validToken.indexOf('.'));
+        if (verifier.verify(validToken) != 42L || verifier.verify(forgedToken) != AuthTokenVerifier.INVALID) {
+            throw new IllegalStateException("benchmark tokens do not verify as expected");
+        }
+    }
+
+    @Benchmark
+    public long valid() {
+        return verifier.verify(validToken);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long validContended() {
+        return verifier.verify(validToken);
+    }
+
+    @Benchmark
+    public long forgedSignature() {
+        return verifier.verify(forgedToken);
+    }
+
+    @Benchmark
+    public long unknownKey() {
+        return verifier.verify(unknownKeyToken);
+    }
+
+    private static String sign(String keyId, long userId, long issuedAt, long expiresAt) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        byte[] payload = ByteBuffer.allocate(Long.BYTES * 3)
+                .putLong(userId)
+                .putLong(issuedAt)
+                .putLong(expiresAt)
+                .array();
+        String signed = keyId + "." + encoder.encodeToString(payload);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(Base64.getDecoder().decode(SECRET), "HmacSHA256"));
+        return signed + "." + encoder.encodeToString(mac.doFinal(signed.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,102 @@
+package com.shop.orders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoadSheddingFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // One permit for critical, normal and bulk alike; nothing waits
+    private final LoadSheddingFilter filter = new LoadSheddingFilter(meterRegistry, true,
+            1, 1.0, 1.0, 20, 100, 0, 0, 0, 2);
+
+    @Test
+    void classifiesOrderRequests() {
+        assertThat(RequestPriority.classify(request("POST", "/api/orders"))).isEqualTo(RequestPriority.CRITICAL);
+        assertThat(RequestPriority.classify(request("GET", "/api/orders/42"))).isEqualTo(RequestPriority.NORMAL);
+        assertThat(RequestPriority.classify(request("GET", "/api/orders/user/7"))).isEqualTo(RequestPriority.NORMAL);
+        assertThat(RequestPriority.classify(request("GET", "/api/orders"))).isEqualTo(RequestPriority.BULK);
+        assertThat(RequestPriority.classify(request("GET", "/api/orders/rollups"))).isEqualTo(RequestPriority.BULK);
+        assertThat(RequestPriority.classify(request("GET", "/api/orders/journal"))).isEqualTo(RequestPriority.BULK);
+    }
+
+    @Test
+    void admittedRequestReachesTheChainAndReleasesItsPermit() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<Integer> inFlightInChain = new AtomicReference<>();
+
+        filter.doFilter(request("GET", "/api/orders/42"), response,
+                (req, res) -> inFlightInChain.set(inFlight()));
+
+        assertThat(inFlightInChain.get()).isEqualTo(1);
+        assertThat(inFlight()).isZero();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(count("normal", "admitted")).isEqualTo(1);
+    }
+
+    @Test
+    void requestThatCannotGetAPermitIsShedWithRetryAfter() throws Exception {
+        MockHttpServletResponse shedResponse = new MockHttpServletResponse();
+        // The outer request holds the only permit while the inner one arrives
+        FilterChain holdPermit = (req, res) -> filter.doFilter(request("GET", "/api/orders"), shedResponse,
+                (innerReq, innerRes) -> { throw new AssertionError("shed request reached the controller"); });
+
+        filter.doFilter(request("POST", "/api/orders"), new MockHttpServletResponse(), holdPermit);
+
+        assertThat(shedResponse.getStatus()).isEqualTo(503);
+        assertThat(shedResponse.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(shedResponse.getContentAsString()).contains("\"priority\":\"BULK\"");
+        assertThat(count("bulk", "shed")).isEqualTo(1);
+        assertThat(count("critical", "admitted")).isEqualTo(1);
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void permitIsReleasedWhenTheChainThrows() {
+        assertThatThrownBy(() -> filter.doFilter(request("POST", "/api/orders"), new MockHttpServletResponse(),
+                (req, res) -> { throw new IllegalStateException("controller failed"); }))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void requestsOutsideOrdersAndHealthChecksBypassTheGate() throws Exception {
+        FilterChain holdPermit = (req, res) -> {
+            for (String path : new String[] {"/api/orders/health", "/actuator/prometheus"}) {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                filter.doFilter(request("GET", path), response, (innerReq, innerRes) -> { });
+                assertThat(response.getStatus()).as(path).isEqualTo(200);
+            }
+        };
+
+        filter.doFilter(request("POST", "/api/orders"), new MockHttpServletResponse(), holdPermit);
+
+        assertThat(count("critical", "admitted")).isEqualTo(1);
+    }
+
+    private static MockHttpServletRequest request(String method, String path) {
+        return new MockHttpServletRequest(method, path);
+    }
+
+    private int inFlight() {
+        return (int) meterRegistry.get("orders.admission.in.flight").gauge().value();
+    }
+
+    private double count(String priority, String outcome) {
+        return meterRegistry.get("orders.admission.requests")
+                .tag("priority", priority)
+                .tag("outcome", outcome)
+                .counter()
+                .count();
+    }
+}
@@ -0,0 +1,303 @@
+package com.shop.orders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderJournalTest {
+
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+    private static final int RECORD_SIZE = OrderJournal.HEADER_SIZE + OrderJournalEvent.SIZE;
+    // Appends roll once a record would not leave room for the end-of-segment marker
+    private static final int RECORDS_PER_SEGMENT = (SEGMENT_SIZE - Integer.BYTES) / RECORD_SIZE;
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<OrderJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeJournals() {
+        opened.forEach(OrderJournal::close);
+    }
+
+    @Test
+    void appendedEventsAreReadBackInOrder() throws IOException {
+        OrderJournal journal = open(false, 5);
+
+        List<OrderJournalEvent> events = events(0, 3);
+        List<Long> offsets = events.stream().map(journal::append).toList();
+
+        assertThat(offsets).containsExactly(0L, (long) RECORD_SIZE, 2L * RECORD_SIZE);
+        assertThat(journal.endOffset()).isEqualTo(3L * RECORD_SIZE);
+        assertThat(readAll(journal, 0)).containsExactlyElementsOf(events);
+    }
+
+    @Test
+    void fullSegmentRollsIntoAFileNamedAfterItsBaseOffset() throws IOException {
+        OrderJournal journal = open(false, 5);
+
+        List<OrderJournalEvent> events = events(0, RECORDS_PER_SEGMENT + 10);
+        events.forEach(journal::append);
+
+        long secondBase = (long) RECORDS_PER_SEGMENT * RECORD_SIZE;
+        assertThat(segmentFiles()).containsExactly(
+                String.format("%020d.seg", 0),
+                String.format("%020d.seg", secondBase));
+        assertThat(journal.endOffset()).isEqualTo(secondBase + 10L * RECORD_SIZE);
+        // A tailer crosses the boundary without a gap and can also start on the new segment
+        assertThat(readAll(journal, 0)).containsExactlyElementsOf(events);
+        assertThat(readAll(journal, secondBase)).containsExactlyElementsOf(events.subList(RECORDS_PER_SEGMENT, events.size()));
+    }
+
+    @Test
+    void reopenContinuesAfterTheLastRecord() throws IOException {
+        OrderJournal first = open(false, 5);
+        events(0, 5).forEach(first::append);
+        first.close();
+
+        OrderJournal reopened = open(false, 5);
+
+        assertThat(reopened.endOffset()).isEqualTo(5L * RECORD_SIZE);
+        assertThat(reopened.append(event(5))).isEqualTo(5L * RECORD_SIZE);
+        assertThat(readAll(reopened, 0)).containsExactlyElementsOf(events(0, 6));
+    }
+
+    @Test
+    void tornWriteIsDiscardedOnRecovery() throws IOException {
+        OrderJournal first = open(false, 5);
+        events(0, 3).forEach(first::append);
+        first.close();
+
+        // A crash mid-append: the length landed but the payload and CRC did not
+        long tornAt = 3L * RECORD_SIZE;
+        writeInt(tornAt, OrderJournalEvent.SIZE);
+        writeInt(tornAt + Integer.BYTES + 10, 0x5eed);
+
+        OrderJournal reopened = open(false, 5);
+
+        assertThat(reopened.endOffset()).isEqualTo(tornAt);
+        assertThat(readInt(tornAt)).as("torn bytes are cleared").isZero();
+        assertThat(reopened.append(event(3))).isEqualTo(tornAt);
+        assertThat(readAll(reopened, 0)).containsExactlyElementsOf(events(0, 4));
+    }
+
+    @Test
+    void recoveryKeepsReadableRecordsBehindADamagedOne() throws IOException {
+        OrderJournal first = open(false, 5);
+        events(0, 3).forEach(first::append);
+        first.close();
+
+        writeInt(RECORD_SIZE + OrderJournal.HEADER_SIZE + 20, 0xbad);
+
+        OrderJournal reopened = open(false, 5);
+
+        assertThat(reopened.endOffset()).isEqualTo(3L * RECORD_SIZE);
+        assertThat(readInt(2L * RECORD_SIZE)).as("record after the damage is untouched").isEqualTo(OrderJournalEvent.SIZE);
+        assertThat(reopened.append(event(3))).isEqualTo(3L * RECORD_SIZE);
+        assertThat(readAll(reopened, 2L * RECORD_SIZE)).containsExactly(event(2), event(3));
+        assertThatThrownBy(() -> readAll(reopened, 0))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Corrupt record at journal offset " + RECORD_SIZE);
+    }
+
+    @Test
+    void tornTailAfterADamagedRecordIsStillCleared() throws IOException {
+        OrderJournal first = open(false, 5);
+        events(0, 3).forEach(first::append);
+        first.close();
+
+        writeInt(OrderJournal.HEADER_SIZE + 20, 0xbad);
+        long tornAt = 3L * RECORD_SIZE;
+        writeInt(tornAt, OrderJournalEvent.SIZE);
+
+        OrderJournal reopened = open(false, 5);
+
+        assertThat(reopened.endOffset()).isEqualTo(tornAt);
+        assertThat(readInt(tornAt)).isZero();
+        assertThat(readAll(reopened, RECORD_SIZE)).containsExactly(event(1), event(2));
+    }
+
+    @Test
+    void droppedSegmentIsReportedAsNotRetained() throws IOException {
+        OrderJournal journal = new OrderJournal(true, dir.toString(), SEGMENT_SIZE / (1024 * 1024),
+                5, 1, true, 5000, meterRegistry);
+        journal.open();
+        opened.add(journal);
+        OrderJournal.Tailer early = journal.tail(0);
+
+        // Retention only drops a segment once fsyncs have moved past it; a CONFIRMED append waits for one
+        events(0, 2 * RECORDS_PER_SEGMENT - 1).forEach(journal::append);
+        journal.append(confirmed(0));
+        journal.append(event(0));
+
+        assertThat(journal.firstOffset()).isEqualTo((long) RECORDS_PER_SEGMENT * RECORD_SIZE);
+        assertThatThrownBy(() -> journal.tail(0)).isInstanceOf(OrderJournal.NotRetainedException.class);
+        assertThatThrownBy(() -> early.poll((offset, payload) -> { }, 10))
+                .isInstanceOf(OrderJournal.NotRetainedException.class);
+        assertThat(segmentFiles()).hasSize(2);
+    }
+
+    @Test
+    void tailRejectsOffsetsThatAreNotRecordBoundaries() throws IOException {
+        OrderJournal journal = open(false, 5);
+        events(0, 3).forEach(journal::append);
+
+        assertThatThrownBy(() -> journal.tail(RECORD_SIZE + 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not a record boundary");
+        assertThatThrownBy(() -> journal.tail(4L * RECORD_SIZE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("outside the journal");
+        assertThatThrownBy(() -> journal.tail(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(journal.tail(3L * RECORD_SIZE).poll((offset, payload) -> { }, 10)).isZero();
+    }
+
+    @Test
+    void pollRefusesACorruptedRecord() throws IOException {
+        OrderJournal journal = open(false, 5);
+        events(0, 3).forEach(journal::append);
+
+        // Same file the journal has mapped, so the change is visible through the mapping
+        writeInt(RECORD_SIZE + OrderJournal.HEADER_SIZE + 20, 0xbad);
+
+        OrderJournal.Tailer tailer = journal.tail(0);
+        List<OrderJournalEvent> read = new ArrayList<>();
+        assertThatThrownBy(() -> tailer.poll((offset, payload) -> read.add(OrderJournalEvent.decode(payload)), 10))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Corrupt record at journal offset " + RECORD_SIZE);
+        assertThat(read).containsExactly(event(0));
+    }
+
+    @Test
+    void concurrentConfirmedAppendsShareGroupCommits() throws Exception {
+        OrderJournal journal = open(true, 5);
+        int threads = 8;
+        int perThread = 50;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<CompletableFuture<Void>> writers = IntStream.range(0, threads)
+                    .mapToObj(t -> CompletableFuture.runAsync(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            journal.append(confirmed(t * perThread + i));
+                            // Awaited appends return only once an fsync covered them
+                            assertThat(unflushedBytes()).isLessThanOrEqualTo(threads * (long) RECORD_SIZE);
+                        }
+                    }, executor))
+                    .toList();
+            CompletableFuture.allOf(writers.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        var groups = meterRegistry.get("orders.journal.flush.records").summary();
+        assertThat(groups.totalAmount()).isEqualTo(threads * perThread);
+        assertThat(groups.count()).as("fsyncs").isLessThan(threads * perThread);
+        assertThat(groups.max()).isGreaterThan(1);
+        assertThat(unflushedBytes()).isZero();
+    }
+
+    @Test
+    void onlyConfirmedEventsWaitForTheFsync() throws IOException {
+        // The flusher never runs during the test, so an awaited append would hit its timeout
+        OrderJournal journal = new OrderJournal(true, dir.toString(), 1, 60_000, 16, true, 60_000, meterRegistry);
+        journal.open();
+        opened.add(journal);
+
+        assertThat(journal.append(event(0))).isZero();
+
+        assertThat(unflushedBytes()).isEqualTo(RECORD_SIZE);
+    }
+
+    @Test
+    void disabledJournalAcceptsNothing() throws IOException {
+        OrderJournal journal = new OrderJournal(false, dir.toString(), 1, 5, 16, false, 1000, meterRegistry);
+        journal.open();
+
+        assertThat(journal.append(event(0))).isEqualTo(-1);
+        assertThat(segmentFiles()).isEmpty();
+        assertThatThrownBy(() -> journal.tail(0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private OrderJournal open(boolean awaitDurable, long flushIntervalMs) throws IOException {
+        OrderJournal journal = new OrderJournal(true, dir.toString(), SEGMENT_SIZE / (1024 * 1024),
+                flushIntervalMs, 16, awaitDurable, 5000, meterRegistry);
+        journal.open();
+        opened.add(journal);
+        return journal;
+    }
+
+    private static List<OrderJournalEvent> readAll(OrderJournal journal, long from) {
+        List<OrderJournalEvent> events = new ArrayList<>();
+        OrderJournal.Tailer tailer = journal.tail(from);
+        while (tailer.poll((offset, payload) -> events.add(OrderJournalEvent.decode(payload)), 1000) > 0) {
+            // keep polling until caught up
+        }
+        assertThat(tailer.offset()).isEqualTo(journal.endOffset());
+        return events;
+    }
+
+    private static List<OrderJournalEvent> events(int from, int to) {
+        return IntStream.range(from, to).mapToObj(OrderJournalTest::event).toList();
+    }
+
+    private static OrderJournalEvent event(int i) {
+        return new OrderJournalEvent(OrderJournalEvent.Type.PLACED, 1_700_000_000_000L + i, 0, i, 1000 + i, 1 + i % 5, 999L * i);
+    }
+
+    private static OrderJournalEvent confirmed(int i) {
+        return new OrderJournalEvent(OrderJournalEvent.Type.CONFIRMED, 1_700_000_000_000L + i, 5000 + i, i, 1000 + i, 1, 999L * i);
+    }
+
+    private double unflushedBytes() {
+        return meterRegistry.get("orders.journal.unflushed.bytes").gauge().value();
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        if (!Files.exists(dir)) {
+            return List.of();
+        }
+        try (var files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    // Offsets in the first segment are file positions
+    private void writeInt(long position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(firstSegment(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, value), position);
+        }
+    }
+
+    private int readInt(long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(firstSegment(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(buffer, position);
+            return buffer.getInt(0);
+        }
+    }
+
+    private Path firstSegment() {
+        return dir.resolve(String.format("%020d.seg", 0));
+    }
+}
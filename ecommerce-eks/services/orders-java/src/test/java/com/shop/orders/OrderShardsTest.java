@@ -0,0 +1,258 @@
+package com.shop.orders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderShardsTest {
+
+    private static final int USERS = 20_000;
+
+    // Pools are created lazily, so nothing here connects to MySQL
+    private final List<OrderShards> created = new ArrayList<>();
+
+    @AfterEach
+    void closeShards() {
+        created.forEach(OrderShards::close);
+    }
+
+    @Test
+    void singleShardPlacesEveryUserOnShardZero() {
+        OrderShards shards = shards(1);
+
+        assertThat(shards.count()).isEqualTo(1);
+        assertThat(IntStream.range(0, 1000).map(user -> shards.shardForUser(user))).containsOnly(0);
+    }
+
+    @Test
+    void ringPlacementIsStableAndSpreadsUsersEvenly() {
+        OrderShards shards = shards(4);
+        OrderShards sameConfig = shards(4);
+
+        int[] perShard = new int[4];
+        for (long user = 1; user <= USERS; user++) {
+            int shard = shards.shardForUser(user);
+            assertThat(sameConfig.shardForUser(user)).isEqualTo(shard);
+            perShard[shard]++;
+        }
+        for (int count : perShard) {
+            assertThat(count).isBetween(USERS / 4 * 7 / 10, USERS / 4 * 13 / 10);
+        }
+    }
+
+    @Test
+    void appendingShardOnlyMovesUsersOntoTheNewShard() {
+        OrderShards three = shards(3);
+        OrderShards four = shards(4);
+
+        int moved = 0;
+        for (long user = 1; user <= USERS; user++) {
+            int before = three.shardForUser(user);
+            int after = four.shardForUser(user);
+            if (before != after) {
+                assertThat(after).isEqualTo(3);
+                moved++;
+            }
+        }
+        // Roughly a quarter of users belong on the new shard
+        assertThat(moved).isBetween(USERS / 4 * 7 / 10, USERS / 4 * 13 / 10);
+    }
+
+    @Test
+    void shardsForUserAddsTheShardEachEarlierRingPlacedTheUserOn() {
+        OrderShards three = shards(3);
+        OrderShards four = shards(4);
+        OrderShards grown = shards(4, List.of(3), new MockEnvironment(), 0);
+
+        for (long user = 1; user <= USERS; user++) {
+            int before = three.shardForUser(user);
+            int after = four.shardForUser(user);
+            assertThat(grown.shardForUser(user)).isEqualTo(after);
+            if (before == after) {
+                assertThat(grown.shardsForUser(user)).containsExactly(after);
+            } else {
+                assertThat(grown.shardsForUser(user)).containsExactly(after, before);
+            }
+        }
+    }
+
+    @Test
+    void shardsForUserListsEachShardOnceAcrossSeveralEarlierRings() {
+        OrderShards grown = shards(4, List.of(1, 2, 3), new MockEnvironment(), 0);
+
+        for (long user = 1; user <= 1000; user++) {
+            List<Integer> shards = grown.shardsForUser(user);
+            assertThat(shards.get(0)).isEqualTo(grown.shardForUser(user));
+            assertThat(shards).doesNotHaveDuplicates().contains(0);
+        }
+    }
+
+    @Test
+    void shardsForUserIsTheCurrentShardWithoutEarlierRings() {
+        OrderShards shards = shards(3);
+
+        for (long user = 1; user <= 1000; user++) {
+            assertThat(shards.shardsForUser(user)).containsExactly(shards.shardForUser(user));
+        }
+    }
+
+    @Test
+    void previousShardCountMustBeSmallerThanTheCurrentOne() {
+        assertThatThrownBy(() -> shards(3, List.of(3), new MockEnvironment(), 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("between 1 and 2");
+        assertThatThrownBy(() -> shards(3, List.of(0), new MockEnvironment(), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void hikariSettingsApplyToEveryShardPool() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.datasource.hikari.connection-timeout", "1234")
+                .withProperty("spring.datasource.hikari.maximum-pool-size", "7");
+        OrderShards shards = shards(3, List.of(), environment, 0);
+
+        for (int shard = 0; shard < 3; shard++) {
+            HikariDataSource pool = (HikariDataSource) shards.dataSources().get(shard);
+            assertThat(pool.getConnectionTimeout()).isEqualTo(1234);
+            assertThat(pool.getMaximumPoolSize()).isEqualTo(7);
+            assertThat(pool.getJdbcUrl()).isEqualTo("jdbc:mysql://shard" + shard + ":3306/orders");
+            assertThat(pool.getPoolName()).isEqualTo("orders-shard-" + shard);
+        }
+    }
+
+    @Test
+    void shardPoolSizeOverridesTheHikariMaximum() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.datasource.hikari.maximum-pool-size", "7");
+        OrderShards shards = shards(2, List.of(), environment, 3);
+
+        assertThat(((HikariDataSource) shards.dataSources().get(1)).getMaximumPoolSize()).isEqualTo(3);
+    }
+
+    @Test
+    void idsCarryTheirShardAboveTheShift() {
+        OrderShards shards = shards(3);
+
+        assertThat(OrderShards.idBase(0)).isZero();
+        assertThat(OrderShards.idBase(2)).isEqualTo(2L << OrderShards.SHARD_SHIFT);
+        assertThat(shards.shardOfId(12345)).isZero();
+        assertThat(shards.shardOfId(OrderShards.idBase(1) + 1)).isEqualTo(1);
+        assertThat(shards.shardOfId(OrderShards.idBase(3) - 1)).isEqualTo(2);
+    }
+
+    @Test
+    void idFromUnknownShardIsRejected() {
+        OrderShards shards = shards(2);
+
+        assertThatThrownBy(() -> shards.shardOfId(OrderShards.idBase(2) + 7))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unknown shard 2");
+    }
+
+    @Test
+    void mergeSortedInterleavesSortedLists() {
+        Comparator<Integer> newestFirst = Comparator.reverseOrder();
+        List<List<Integer>> perShard = List.of(
+                List.of(9, 6, 2),
+                List.of(),
+                List.of(8, 7, 1),
+                List.of(10, 5));
+
+        assertThat(OrderShards.mergeSorted(perShard, newestFirst))
+                .containsExactly(10, 9, 8, 7, 6, 5, 2, 1);
+    }
+
+    @Test
+    void mergeSortedHandlesNoLists() {
+        assertThat(OrderShards.mergeSorted(List.<List<Integer>>of(), Comparator.naturalOrder())).isEmpty();
+    }
+
+    @Test
+    void scatterRunsOnEveryShardAndKeepsShardOrder() {
+        OrderShards shards = shards(3);
+
+        List<Integer> routed = shards.scatter(shard -> OrderShards.current() * 10 + shard);
+
+        assertThat(routed).containsExactly(0, 11, 22);
+        assertThat(OrderShards.current()).isZero();
+    }
+
+    @Test
+    void scatterRethrowsTheShardsRuntimeException() {
+        OrderShards shards = shards(3);
+        IllegalStateException failure = new IllegalStateException("shard 1 is down");
+
+        assertThatThrownBy(() -> shards.scatter(shard -> {
+            if (shard == 1) {
+                throw failure;
+            }
+            return shard;
+        })).isSameAs(failure);
+    }
+
+    @Test
+    void scatterLeavesErrorsWrapped() {
+        OrderShards shards = shards(2);
+
+        assertThatThrownBy(() -> shards.scatter(shard -> {
+            throw new AssertionError("boom");
+        })).isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(AssertionError.class);
+    }
+
+    @Test
+    void onRestoresTheEnclosingShard() {
+        OrderShards shards = shards(3);
+
+        int inner = shards.on(1, () -> shards.on(2, OrderShards::current));
+        int outer = shards.on(1, () -> {
+            shards.on(2, () -> { });
+            return OrderShards.current();
+        });
+
+        assertThat(inner).isEqualTo(2);
+        assertThat(outer).isEqualTo(1);
+        assertThat(OrderShards.current()).isZero();
+    }
+
+    @Test
+    void routingDataSourceFollowsTheCurrentShard() {
+        OrderShards shards = shards(3);
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(shards);
+        routing.afterPropertiesSet();
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(0);
+        assertThat(shards.on(2, routing::determineCurrentLookupKey)).isEqualTo(2);
+        assertThat(routing.getResolvedDataSources().get(2)).isSameAs(shards.dataSources().get(2));
+        assertThat(routing.getResolvedDefaultDataSource()).isSameAs(shards.dataSources().get(0));
+    }
+
+    private OrderShards shards(int count) {
+        return shards(count, List.of(), new MockEnvironment(), 2);
+    }
+
+    private OrderShards shards(int count, List<Integer> previousCounts, MockEnvironment environment, int poolSize) {
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl("jdbc:mysql://shard0:3306/orders");
+        List<String> additional = IntStream.range(1, count)
+                .mapToObj(shard -> "jdbc:mysql://shard" + shard + ":3306/orders")
+                .toList();
+        OrderShards shards = new OrderShards(properties, environment, additional, previousCounts, poolSize, 128,
+                new SimpleMeterRegistry());
+        created.add(shards);
+        return shards;
+    }
+}
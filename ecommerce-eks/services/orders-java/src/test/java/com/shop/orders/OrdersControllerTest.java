@@ -0,0 +1,107 @@
+package com.shop.orders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrdersControllerTest {
+
+    private static final int RECORD_SIZE = OrderJournal.HEADER_SIZE + OrderJournalEvent.SIZE;
+    private static final int RECORDS_PER_SEGMENT = (1024 * 1024 - Integer.BYTES) / RECORD_SIZE;
+
+    @TempDir
+    Path dir;
+
+    private final List<OrderJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeJournals() {
+        opened.forEach(OrderJournal::close);
+    }
+
+    @Test
+    void journalReplayIsNotFoundWhileTheJournalIsDisabled() throws IOException {
+        OrdersController controller = controller(journal(false, 16));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.readJournal(0, 10, response);
+
+        assertThat(response.getStatus()).isEqualTo(404);
+    }
+
+    @Test
+    void journalReplayStreamsFramesAndTheNextOffset() throws IOException {
+        OrderJournal journal = journal(true, 16);
+        for (int i = 0; i < 3; i++) {
+            journal.append(event(i));
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller(journal).readJournal(RECORD_SIZE, 1, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader("X-Journal-Next-Offset")).isEqualTo(Long.toString(2L * RECORD_SIZE));
+        assertThat(response.getHeader("X-Journal-End-Offset")).isEqualTo(Long.toString(3L * RECORD_SIZE));
+        ByteBuffer body = ByteBuffer.wrap(response.getContentAsByteArray());
+        assertThat(body.getInt()).isEqualTo(OrderJournalEvent.SIZE);
+        assertThat(OrderJournalEvent.decode(body)).isEqualTo(event(1));
+    }
+
+    @Test
+    void journalReplayRejectsAnOffsetInsideARecord() throws IOException {
+        OrderJournal journal = journal(true, 16);
+        journal.append(event(0));
+        journal.append(event(1));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller(journal).readJournal(RECORD_SIZE + 3, 10, response);
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(response.getErrorMessage()).contains("not a record boundary");
+    }
+
+    @Test
+    void journalReplayOfADroppedSegmentIsGone() throws IOException {
+        OrderJournal journal = journal(true, 1);
+        // Fill two segments, make them durable with an awaited CONFIRMED, then roll so the first is dropped
+        for (int i = 0; i < 2 * RECORDS_PER_SEGMENT - 1; i++) {
+            journal.append(event(i));
+        }
+        journal.append(new OrderJournalEvent(OrderJournalEvent.Type.CONFIRMED, 1L, 1, 1, 1, 1, 1));
+        journal.append(event(0));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller(journal).readJournal(0, 10, response);
+
+        assertThat(response.getStatus()).isEqualTo(410);
+        assertThat(response.getHeader("X-Journal-First-Offset"))
+                .isEqualTo(Long.toString((long) RECORDS_PER_SEGMENT * RECORD_SIZE));
+    }
+
+    private OrderJournal journal(boolean enabled, int retainedSegments) throws IOException {
+        OrderJournal journal = new OrderJournal(enabled, dir.toString(), 1, 5, retainedSegments, true, 5000,
+                new SimpleMeterRegistry());
+        journal.open();
+        opened.add(journal);
+        return journal;
+    }
+
+    // Journal replay only touches the journal
+    private static OrdersController controller(OrderJournal journal) {
+        return new OrdersController(null, null, journal);
+    }
+
+    private static OrderJournalEvent event(int i) {
+        return new OrderJournalEvent(OrderJournalEvent.Type.PLACED, 1_700_000_000_000L + i, 0, i, 1000 + i, 1, 999L * i);
+    }
+}
@@ -0,0 +1,113 @@
+package com.shop.orders;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static com.shop.orders.UserClient.UserResponse;
+
+/**
+ * JSON vs CBOR for the users-service responses UserClient parses: one user
+ * (GET /api/users/{id}) and a full batch (GET /api/users?ids=..., 100 users).
+ * Bytes on the wire, raw and gzipped as the services compress above 2KB, are printed
+ * once at setup; the benchmarks measure CPU per call to decode and encode.
+ * Add {@code -prof gc} to see allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<Map<Long, UserResponse>> BATCH_TYPE = new TypeReference<>() {};
+    private static final int BATCH_SIZE = 100;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final ObjectMapper cbor = new CBORMapper();
+
+    private UserResponse user;
+    private Map<Long, UserResponse> batch;
+    private byte[] userJson;
+    private byte[] userCbor;
+    private byte[] batchJson;
+    private byte[] batchCbor;
+
+    @Setup
+    public void setUp() throws IOException {
+        batch = new LinkedHashMap<>();
+        for (long id = 1; id <= BATCH_SIZE; id++) {
+            batch.put(id, new UserResponse(id, "customer" + id + "@example.com", "Customer Number " + id,
+                    id + " Market Street", "San Francisco", "CA", "941" + (id % 100), "US"));
+        }
+        user = batch.get(1L);
+        userJson = json.writeValueAsBytes(user);
+        userCbor = cbor.writeValueAsBytes(user);
+        batchJson = json.writeValueAsBytes(batch);
+        batchCbor = cbor.writeValueAsBytes(batch);
+
+        if (!cbor.readValue(userCbor, UserResponse.class).equals(user)
+                || !cbor.readValue(batchCbor, BATCH_TYPE).equals(batch)) {
+            throw new IllegalStateException("CBOR round trip does not match");
+        }
+        System.out.printf("%nbytes on the wire (raw / gzip): user json=%d/%d cbor=%d/%d, batch json=%d/%d cbor=%d/%d%n",
+                userJson.length, gzip(userJson).length, userCbor.length, gzip(userCbor).length,
+                batchJson.length, gzip(batchJson).length, batchCbor.length, gzip(batchCbor).length);
+    }
+
+    @Benchmark
+    public UserResponse decodeUserJson() throws IOException {
+        return json.readValue(userJson, UserResponse.class);
+    }
+
+    @Benchmark
+    public UserResponse decodeUserCbor() throws IOException {
+        return cbor.readValue(userCbor, UserResponse.class);
+    }
+
+    @Benchmark
+    public Map<Long, UserResponse> decodeBatchJson() throws IOException {
+        return json.readValue(batchJson, BATCH_TYPE);
+    }
+
+    @Benchmark
+    public Map<Long, UserResponse> decodeBatchCbor() throws IOException {
+        return cbor.readValue(batchCbor, BATCH_TYPE);
+    }
+
+    @Benchmark
+    public byte[] encodeBatchJson() throws IOException {
+        return json.writeValueAsBytes(batch);
+    }
+
+    @Benchmark
+    public byte[] encodeBatchCbor() throws IOException {
+        return cbor.writeValueAsBytes(batch);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -169,4 +169,26 @@ async def charge(request: PaymentRequest):
         status="DECLINED",
         transactionId=tx_id,
         reason="Card declined by static rules",
-    )
\ No newline at end of file
+    )
+
+class RefundRequest(BaseModel):
+    reason: str | None = None
+
+
+@app.post("/api/payments/{transaction_id}/refund", response_model=PaymentResponse)
+async def refund(transaction_id: str, request: RefundRequest | None = None):
+    """
+    Static refund logic: every refund/void succeeds.
+    Safe to call repeatedly for the same transaction (orders-service retries compensations).
+    """
+    reason = request.reason if request else None
+    logger.info("Refund request received transactionId=%s reason=%s", transaction_id, reason)
+
+    if not transaction_id.startswith("pay_"):
+        raise HTTPException(status_code=404, detail="Unknown transaction")
+
+    return PaymentResponse(
+        status="REFUNDED",
+        transactionId=transaction_id,
+        reason=reason or "Refunded",
+    )
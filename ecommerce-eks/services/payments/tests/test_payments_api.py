@@ -482,3 +482,27 @@ class TestCORSConfiguration:
             "/health", headers={"Origin": "http://localhost:3000"}
         )
         assert response.status_code == 200
+
+
+class TestPaymentRefund:
+    """Test refund endpoint used by order compensation."""
+
+    def test_refund_known_transaction(self, client):
+        """Test refund succeeds and echoes the transaction id."""
+        response = client.post("/api/payments/pay_abc123def456/refund",
+                               json={"reason": "order saga compensation"})
+        assert response.status_code == 200
+        data = response.json()
+        assert data["status"] == "REFUNDED"
+        assert data["transactionId"] == "pay_abc123def456"
+
+    def test_refund_is_repeatable(self, client):
+        """Test repeated refunds for the same transaction all succeed."""
+        for _ in range(2):
+            response = client.post("/api/payments/pay_abc123def456/refund")
+            assert response.status_code == 200
+
+    def test_refund_unknown_transaction_returns_404(self, client):
+        """Test refund for a non-payment id is rejected."""
+        response = client.post("/api/payments/not-a-payment/refund")
+        assert response.status_code == 404
@@ -0,0 +1,72 @@
+#!/usr/bin/env bash
+# Startup benchmark for the Java services.
+# Measures time-to-first-successful-request and RSS for each startup mode.
+#
+# Usage: ./startup-benchmark.sh <orders-java|users-java> [jar|fast-start|native ...]
+#
+# Build the artifacts first:
+#   jar:        mvn package
+#   fast-start: mvn -Pfast-start package
+#   native:     mvn -Pnative native:compile   (GraalVM JDK)
+#
+# MySQL is not required: the schema check is skipped and the probe URL does not touch the DB.
+# Runs with the dev profile so the services have an auth token key.
+# Override PORT, PROBE_PATH or RUNS via environment.
+
+set -euo pipefail
+
+SERVICE_DIR="${1:?usage: $0 <orders-java|users-java> [modes...]}"
+shift
+if [ $# -eq 0 ]; then set -- jar fast-start native; fi
+MODES=("$@")
+
+PORT="${PORT:-18080}"
+RUNS="${RUNS:-5}"
+case "$SERVICE_DIR" in
+  orders-java) ARTIFACT=orders-service; PROBE_PATH="${PROBE_PATH:-/api/orders/health}" ;;
+  users-java)  ARTIFACT=users-service;  PROBE_PATH="${PROBE_PATH:-/actuator/info}" ;;
+  *) echo "unknown service: $SERVICE_DIR" >&2; exit 1 ;;
+esac
+
+TARGET="$(cd "$(dirname "$0")/$SERVICE_DIR/target" && pwd)"
+JAR_NAME="$ARTIFACT-0.0.1-SNAPSHOT.jar"
+JVM_OPTS=(--add-opens=java.base/java.io=ALL-UNNAMED)
+APP_OPTS=(--server.port="$PORT" --spring.profiles.active=dev --spring.jpa.hibernate.ddl-auto=none
+          --spring.jpa.properties.hibernate.boot.allow_jdbc_metadata_access=false)
+
+now_ms() { date +%s%3N; }
+
+start_mode() {
+  case "$1" in
+    jar)
+      java "${JVM_OPTS[@]}" -jar "$TARGET/$JAR_NAME" "${APP_OPTS[@]}" ;;
+    fast-start)
+      cd "$TARGET/fast-start"
+      java "${JVM_OPTS[@]}" -XX:SharedArchiveFile=app.jsa -Dspring.aot.enabled=true \
+        -jar "$JAR_NAME" "${APP_OPTS[@]}" ;;
+    native)
+      "$TARGET/$ARTIFACT" "${APP_OPTS[@]}" ;;
+  esac
+}
+
+printf "%-12s %-4s %12s %10s\n" mode run first_req_ms rss_mb
+for mode in "${MODES[@]}"; do
+  for run in $(seq 1 "$RUNS"); do
+    start=$(now_ms)
+    (start_mode "$mode" > "/tmp/startup-$mode.log" 2>&1) &
+    launcher=$!
+    until curl -sf -o /dev/null "http://localhost:$PORT$PROBE_PATH"; do
+      if ! kill -0 "$launcher" 2>/dev/null; then
+        echo "$mode failed to start, see /tmp/startup-$mode.log" >&2
+        exit 1
+      fi
+      sleep 0.05
+    done
+    elapsed=$(( $(now_ms) - start ))
+    pid=$(pgrep -P "$launcher" | head -1)
+    rss_kb=$(ps -o rss= -p "${pid:-$launcher}" | tr -d ' ')
+    printf "%-12s %-4s %12s %10s\n" "$mode" "$run" "$elapsed" "$(( rss_kb / 1024 ))"
+    pkill -P "$launcher" 2>/dev/null || true
+    wait "$launcher" 2>/dev/null || true
+  done
+done
@@ -0,0 +1,71 @@
+package com.shop.users;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Issues compact HMAC-SHA256 signed tokens that other services verify locally:
+ * {@code <keyId>.<base64url(userId, issuedAt, expiresAt)>.<base64url(signature)>}.
+ * The payload is three big-endian longs so verifiers never need a JSON parser.
+ */
+@Component
+public class AuthTokenIssuer {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final String keyId;
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+
+    public AuthTokenIssuer(@Value("${auth.token.keys:}") String keys,
+                           @Value("${auth.token.active-key-id:}") String activeKeyId,
+                           @Value("${auth.token.ttl-seconds:3600}") long ttlSeconds) {
+        // There is deliberately no built-in key: a committed one would let anyone mint tokens
+        if (keys.isBlank() || activeKeyId.isBlank()) {
+            throw new IllegalStateException("auth.token.keys and auth.token.active-key-id must be set "
+                    + "(AUTH_TOKEN_KEYS / AUTH_TOKEN_ACTIVE_KEY_ID, or run with the dev profile)");
+        }
+        this.keyId = activeKeyId;
+        this.key = findKey(keys, activeKeyId);
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public String issue(Long userId) {
+        long now = Instant.now().getEpochSecond();
+        byte[] payload = ByteBuffer.allocate(Long.BYTES * 3)
+                .putLong(userId)
+                .putLong(now)
+                .putLong(now + ttlSeconds)
+                .array();
+
+        String signed = keyId + "." + ENCODER.encodeToString(payload);
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] signature = mac.doFinal(signed.getBytes(StandardCharsets.US_ASCII));
+            return signed + "." + ENCODER.encodeToString(signature);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Failed to sign auth token", ex);
+        }
+    }
+
+    // keys are "keyId:base64Secret" pairs separated by commas, so old keys can stay valid while rotating
+    private static SecretKeySpec findKey(String keys, String keyId) {
+        for (String entry : keys.split(",")) {
+            String[] parts = entry.trim().split(":", 2);
+            if (parts.length == 2 && parts[0].equals(keyId)) {
+                return new SecretKeySpec(Base64.getDecoder().decode(parts[1]), ALGORITHM);
+            }
+        }
+        throw new IllegalStateException("auth.token.keys has no entry for active key id " + keyId);
+    }
+}
@@ -0,0 +1,314 @@
+package com.shop.users;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over registered emails, so register and login can skip the findByEmail
+ * lookup for addresses that were almost certainly never registered.
+ * <p>
+ * Each replica keeps its own filter, built by streaming the users table at startup.
+ * Users added by other replicas or imports are picked up by a periodic catch-up. It
+ * re-reads a window of ids below the high-water mark, because AUTO_INCREMENT ids can
+ * commit out of order. A periodic full rebuild covers anything that window missed.
+ * <p>
+ * Negatives are therefore sound only up to the catch-up window: a user registered on
+ * another replica in the last sync interval is not in this replica's filter yet.
+ * Register acts on negatives because uk_users_email remains the final authority.
+ * Login acts on them (answering "Invalid credentials" without a query) only while the
+ * last catch-up is recent, so a just-registered user may need to retry login for up to
+ * about one sync interval. A sample of login negatives is still checked against the
+ * database so false negatives stay measured.
+ */
+@Component
+public class EmailBloomFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailBloomFilter.class);
+    private static final long BUILD_RETRY_MS = 10_000;
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final long bitCount;
+    private final int hashCount;
+    private final long syncOverlapIds;
+    private final boolean trustLoginNegatives;
+    private final long maxSyncAgeMillis;
+    private final double loginVerifySampleRate;
+
+    private volatile AtomicLongArray bits;
+    // Non-null while a full rebuild is streaming, so concurrent adds reach the new bits too
+    private volatile AtomicLongArray rebuilding;
+    private volatile boolean ready;
+    private volatile long highWaterMark;
+    private volatile long lastSyncMillis;
+
+    private final Counter definitelyAbsent;
+    private final Counter maybePresent;
+    private final Counter falsePositives;
+    private final Counter falseNegatives;
+    private final Counter queriesSaved;
+
+    public EmailBloomFilter(UserRepository userRepository,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${users.email-bloom.expected-insertions:1000000}") long expectedInsertions,
+                            @Value("${users.email-bloom.false-positive-rate:0.01}") double falsePositiveRate,
+                            @Value("${users.email-bloom.sync-overlap-ids:1000}") long syncOverlapIds,
+                            @Value("${users.email-bloom.sync-interval-ms:5000}") long syncIntervalMs,
+                            @Value("${users.email-bloom.login.trust-negatives:true}") boolean trustLoginNegatives,
+                            @Value("${users.email-bloom.login.verify-sample-rate:0.01}") double loginVerifySampleRate) {
+        this.userRepository = userRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+
+        // Standard sizing: m = -n ln p / (ln 2)^2, k = m/n ln 2
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, m);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.bits = newBits();
+        this.syncOverlapIds = syncOverlapIds;
+        this.trustLoginNegatives = trustLoginNegatives;
+        // One missed catch-up is tolerated; after that the filter is too stale to answer login
+        this.maxSyncAgeMillis = 2 * syncIntervalMs;
+        this.loginVerifySampleRate = loginVerifySampleRate;
+
+        this.definitelyAbsent = checkCounter(meterRegistry, "absent");
+        this.maybePresent = checkCounter(meterRegistry, "maybe");
+        this.falsePositives = Counter.builder("users.email.bloom.false.positives")
+                .description("Filter said maybe, but the database had no such email")
+                .register(meterRegistry);
+        this.falseNegatives = Counter.builder("users.email.bloom.false.negatives")
+                .description("Filter ruled the email out, but the database had it")
+                .register(meterRegistry);
+        this.queriesSaved = Counter.builder("users.email.bloom.queries.saved")
+                .description("findByEmail lookups skipped because the filter ruled the email out")
+                .register(meterRegistry);
+        Gauge.builder("users.email.bloom.false.positive.rate", this, EmailBloomFilter::observedFalsePositiveRate)
+                .register(meterRegistry);
+    }
+
+    private static Counter checkCounter(MeterRegistry registry, String result) {
+        return Counter.builder("users.email.bloom.checks")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    // Built in the background; until it is ready every check falls through to the database
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        Thread builder = new Thread(() -> {
+            while (!ready) {
+                long start = System.currentTimeMillis();
+                try {
+                    sync(highWaterMark);
+                    ready = true;
+                    logger.info("Email bloom filter built up to userId={} in {} ms ({} bits, {} hashes)",
+                            highWaterMark, System.currentTimeMillis() - start, bitCount, hashCount);
+                } catch (RuntimeException ex) {
+                    logger.warn("Email bloom filter build failed, retrying in {} ms", BUILD_RETRY_MS, ex);
+                    try {
+                        Thread.sleep(BUILD_RETRY_MS);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }, "email-bloom-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * True when the filter has no trace of the email. Callers may only act on this
+     * where a miss is caught downstream (see the class comment).
+     */
+    public boolean isDefinitelyAbsent(String email) {
+        if (!ready || !isFilterable(email)) {
+            return false;
+        }
+        if (mightContain(email)) {
+            maybePresent.increment();
+            return false;
+        }
+        definitelyAbsent.increment();
+        return true;
+    }
+
+    /**
+     * True when login may answer "Invalid credentials" for an email the filter ruled out,
+     * without the indexed lookup. False while the last catch-up is stale, and for the
+     * sampled requests that verify the filter against the database.
+     */
+    public boolean canSkipLoginLookup() {
+        return trustLoginNegatives
+                && System.currentTimeMillis() - lastSyncMillis <= maxSyncAgeMillis
+                && ThreadLocalRandom.current().nextDouble() >= loginVerifySampleRate;
+    }
+
+    public void add(String email) {
+        if (!isFilterable(email)) {
+            return;
+        }
+        AtomicLongArray next = rebuilding;
+        if (next != null) {
+            setBits(next, email);
+        }
+        setBits(bits, email);
+    }
+
+    private void setBits(AtomicLongArray target, String email) {
+        long hash = hash(normalize(email));
+        long h2 = mix(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = target.get(word)) & mask) == 0
+                    && !target.compareAndSet(word, current, current | mask)) {
+                // retry until the bit is set
+            }
+        }
+    }
+
+    // Called when a lookup was skipped because the filter ruled the email out
+    public void recordQuerySaved() {
+        queriesSaved.increment();
+    }
+
+    // Called when the filter said "maybe" and the database lookup found nothing
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    // Called when the filter ruled the email out but the database had it
+    public void recordFalseNegative(String email) {
+        falseNegatives.increment();
+        logger.warn("Email bloom filter missed a registered email; adding it");
+        add(email);
+    }
+
+    // Re-reads the overlap window too: a lower id may have committed after the last sync
+    @Scheduled(fixedDelayString = "${users.email-bloom.sync-interval-ms:5000}",
+            initialDelayString = "${users.email-bloom.sync-interval-ms:5000}")
+    public void catchUp() {
+        if (!ready) {
+            return;
+        }
+        try {
+            sync(Math.max(0, highWaterMark - syncOverlapIds));
+        } catch (RuntimeException ex) {
+            logger.warn("Email bloom filter catch-up failed", ex);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${users.email-bloom.rebuild-interval-ms:3600000}",
+            initialDelayString = "${users.email-bloom.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!ready) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            rebuildAll();
+            logger.info("Email bloom filter rebuilt up to userId={} in {} ms",
+                    highWaterMark, System.currentTimeMillis() - start);
+        } catch (RuntimeException ex) {
+            logger.warn("Email bloom filter rebuild failed, keeping the current filter", ex);
+        }
+    }
+
+    private synchronized void rebuildAll() {
+        rebuilding = newBits();
+        try {
+            sync(0);
+            bits = rebuilding;
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    private synchronized void sync(long afterId) {
+        readOnlyTx.executeWithoutResult(status -> {
+            try (var entries = userRepository.streamEmailsAfter(afterId)) {
+                entries.forEach(entry -> {
+                    add(entry.getEmail());
+                    highWaterMark = Math.max(highWaterMark, entry.getId());
+                });
+            }
+        });
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    private AtomicLongArray newBits() {
+        return new AtomicLongArray((int) ((bitCount + 63) / 64));
+    }
+
+    private boolean mightContain(String email) {
+        AtomicLongArray bits = this.bits;
+        long hash = hash(normalize(email));
+        long h2 = mix(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    double observedFalsePositiveRate() {
+        double maybe = maybePresent.count();
+        return maybe == 0 ? 0.0 : falsePositives.count() / maybe;
+    }
+
+    // MySQL's default collation is case- and accent-insensitive; only plain ASCII
+    // emails are filtered so the filter can never disagree with the database
+    private static boolean isFilterable(String email) {
+        if (email == null) {
+            return false;
+        }
+        for (int i = 0; i < email.length(); i++) {
+            if (email.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // 64-bit FNV-1a
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // SplitMix64 finalizer, used to derive the second hash for double hashing
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
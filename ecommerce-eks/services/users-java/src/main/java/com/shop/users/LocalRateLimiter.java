@@ -0,0 +1,77 @@
+package com.shop.users;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process GCRA limiter. Each key holds one AtomicLong (its theoretical arrival time)
+ * updated by CAS, so acquiring never locks. Keys live in independent stripes, each capped
+ * at maxKeys / stripes entries. A key whose arrival time has passed is indistinguishable
+ * from a fresh one, so idle keys are evicted without changing any decision. If a stripe
+ * is still full of active keys, new keys are let through untracked rather than growing memory.
+ */
+public class LocalRateLimiter implements RateLimiter {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int maxKeysPerStripe;
+    private final long emissionIntervalNanos;
+    private final long toleranceNanos;
+    private final Runnable onUntracked;
+
+    public LocalRateLimiter(int perMinute, int burst, int maxKeys, Runnable onUntracked) {
+        this.emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / perMinute;
+        this.toleranceNanos = emissionIntervalNanos * (Math.max(1, burst) - 1);
+        this.maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+        this.onUntracked = onUntracked;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(String key) {
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        long now = System.nanoTime();
+
+        AtomicLong tat = stripe.buckets.get(key);
+        if (tat == null) {
+            if (stripe.buckets.size() >= maxKeysPerStripe && !stripe.evictIdle(now, maxKeysPerStripe)) {
+                onUntracked.run();
+                return true;
+            }
+            tat = stripe.buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        while (true) {
+            long current = tat.get();
+            long start = current - now > 0 ? current : now;
+            if (start - now > toleranceNanos) {
+                return false;
+            }
+            if (tat.compareAndSet(current, start + emissionIntervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    private static final class Stripe {
+        private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicBoolean evicting = new AtomicBoolean();
+
+        // Returns true if there is room after dropping idle keys; one evicting thread per stripe
+        boolean evictIdle(long now, int limit) {
+            if (evicting.compareAndSet(false, true)) {
+                try {
+                    buckets.values().removeIf(tat -> tat.get() - now <= 0);
+                } finally {
+                    evicting.set(false);
+                }
+            }
+            return buckets.size() < limit;
+        }
+    }
+}
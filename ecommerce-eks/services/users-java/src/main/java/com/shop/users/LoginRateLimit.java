@@ -0,0 +1,77 @@
+package com.shop.users;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Per-email and per-client-IP limits on POST /api/users/login, checked before any
+ * database lookup or BCrypt work. mode=local keeps buckets in this replica;
+ * mode=redis shares them across the cluster.
+ */
+@Component
+public class LoginRateLimit {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginRateLimit.class);
+
+    private final boolean enabled;
+    private final RateLimiter emailLimiter;
+    private final RateLimiter ipLimiter;
+    private final Counter emailRejected;
+    private final Counter ipRejected;
+
+    public LoginRateLimit(MeterRegistry meterRegistry,
+                          ObjectProvider<StringRedisTemplate> redisTemplate,
+                          @Value("${users.rate-limit.enabled:true}") boolean enabled,
+                          @Value("${users.rate-limit.mode:local}") String mode,
+                          @Value("${users.rate-limit.email.per-minute:10}") int emailPerMinute,
+                          @Value("${users.rate-limit.email.burst:5}") int emailBurst,
+                          @Value("${users.rate-limit.ip.per-minute:60}") int ipPerMinute,
+                          @Value("${users.rate-limit.ip.burst:20}") int ipBurst,
+                          @Value("${users.rate-limit.max-keys:100000}") int maxKeys) {
+        this.enabled = enabled;
+        Counter untracked = Counter.builder("users.login.ratelimit.untracked")
+                .description("Login attempts let through because the local limiter was at its key capacity")
+                .register(meterRegistry);
+
+        if ("redis".equalsIgnoreCase(mode)) {
+            StringRedisTemplate redis = redisTemplate.getObject();
+            this.emailLimiter = new RedisRateLimiter(redis, "users:login:email:", emailPerMinute, emailBurst);
+            this.ipLimiter = new RedisRateLimiter(redis, "users:login:ip:", ipPerMinute, ipBurst);
+        } else {
+            this.emailLimiter = new LocalRateLimiter(emailPerMinute, emailBurst, maxKeys, untracked::increment);
+            this.ipLimiter = new LocalRateLimiter(ipPerMinute, ipBurst, maxKeys, untracked::increment);
+        }
+        logger.info("Login rate limit enabled={} mode={}", enabled, mode);
+
+        this.emailRejected = Counter.builder("users.login.ratelimit.rejected")
+                .tag("key", "email")
+                .register(meterRegistry);
+        this.ipRejected = Counter.builder("users.login.ratelimit.rejected")
+                .tag("key", "ip")
+                .register(meterRegistry);
+    }
+
+    public void check(String email, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        if (clientIp != null && !ipLimiter.tryAcquire(clientIp)) {
+            ipRejected.increment();
+            logger.warn("Login rate limited for ip={}", clientIp);
+            throw new TooManyRequestsException("Too many login attempts, retry later");
+        }
+        if (email != null && !emailLimiter.tryAcquire(email.trim().toLowerCase(Locale.ROOT))) {
+            emailRejected.increment();
+            logger.warn("Login rate limited for email={}", email);
+            throw new TooManyRequestsException("Too many login attempts, retry later");
+        }
+    }
+}
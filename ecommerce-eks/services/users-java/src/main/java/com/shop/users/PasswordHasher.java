@@ -0,0 +1,202 @@
+package com.shop.users;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt hashing and verification on a dedicated pool sized to the CPU cores,
+ * so a login burst cannot occupy every Tomcat worker. When the pool and its queue
+ * are full, callers are rejected immediately with 429 instead of piling up; a hash
+ * that does not finish within timeout-ms is shed the same way.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final long BULK_RETRY_MS = 10;
+
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final Semaphore bulkPermits;
+    private final long bulkWaitMs;
+    private final long retryAfterSeconds;
+    private final Timer hashTimer;
+    private final Timer verifyTimer;
+    private final Counter rejected;
+    private final Counter timedOut;
+
+    public PasswordHasher(MeterRegistry meterRegistry,
+                          @Value("${users.password.bcrypt-strength:10}") int strength,
+                          @Value("${users.password.threads:0}") int threads,
+                          @Value("${users.password.queue-capacity:64}") int queueCapacity,
+                          @Value("${users.password.timeout-ms:5000}") long timeoutMs,
+                          @Value("${users.password.bulk-threads:0}") int bulkThreads,
+                          @Value("${users.password.bulk-wait-ms:30000}") long bulkWaitMs,
+                          @Value("${users.password.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.passwordEncoder = new BCryptPasswordEncoder(strength);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadId.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMs = timeoutMs;
+        // Bulk jobs get at most half the pool by default, so logins keep the rest
+        this.bulkPermits = new Semaphore(bulkThreads > 0 ? Math.min(bulkThreads, poolSize) : Math.max(1, poolSize / 2));
+        this.bulkWaitMs = bulkWaitMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        this.hashTimer = Timer.builder("users.password.hash.time")
+                .tag("operation", "hash")
+                .register(meterRegistry);
+        this.verifyTimer = Timer.builder("users.password.hash.time")
+                .tag("operation", "verify")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("users.password.hash.rejected")
+                .description("Hash/verify requests rejected because the BCrypt pool was saturated")
+                .register(meterRegistry);
+        this.timedOut = Counter.builder("users.password.hash.timed.out")
+                .description("Hash/verify requests shed because they did not finish within timeout-ms")
+                .register(meterRegistry);
+        Gauge.builder("users.password.hash.queue.depth", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("users.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    public String hash(String rawPassword) {
+        return run(() -> hashTimer.record(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    /**
+     * Hashes a batch for bulk jobs (see UserImporter) on the same pool, with at most
+     * bulk-threads of them queued or running at once. Instead of being rejected with 429,
+     * the caller waits for a permit, and for queue space when interactive load has filled it,
+     * for up to bulk-wait-ms per password before the batch fails.
+     */
+    public List<String> hashAll(List<String> rawPasswords) {
+        List<Future<String>> futures = new ArrayList<>(rawPasswords.size());
+        try {
+            for (String rawPassword : rawPasswords) {
+                futures.add(submitBulk(() -> hashTimer.record(() -> passwordEncoder.encode(rawPassword))));
+            }
+            List<String> hashes = new ArrayList<>(futures.size());
+            for (Future<String> future : futures) {
+                hashes.add(future.get());
+            }
+            return hashes;
+        } catch (InterruptedException ex) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing passwords", ex);
+        } catch (TimeoutException ex) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("No BCrypt capacity for bulk hashing within " + bulkWaitMs + " ms", ex);
+        } catch (ExecutionException ex) {
+            futures.forEach(future -> future.cancel(true));
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", ex.getCause());
+        }
+    }
+
+    private <T> Future<T> submitBulk(Callable<T> task) throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(bulkWaitMs);
+        if (!bulkPermits.tryAcquire(bulkWaitMs, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException();
+        }
+        // done() runs once the task completes, fails or is cancelled, even while still queued
+        FutureTask<T> releasing = new FutureTask<>(task) {
+            @Override
+            protected void done() {
+                bulkPermits.release();
+            }
+        };
+        try {
+            while (true) {
+                try {
+                    executor.execute(releasing);
+                    return releasing;
+                } catch (RejectedExecutionException ex) {
+                    if (System.nanoTime() - deadline >= 0) {
+                        throw new TimeoutException();
+                    }
+                    // The queue is full of interactive work; let it drain rather than compete
+                    Thread.sleep(BULK_RETRY_MS);
+                }
+            }
+        } catch (InterruptedException | TimeoutException ex) {
+            releasing.cancel(false);
+            throw ex;
+        }
+    }
+
+    public boolean matches(String rawPassword, String passwordHash) {
+        return run(() -> verifyTimer.record(() -> passwordEncoder.matches(rawPassword, passwordHash)));
+    }
+
+    // True when the stored hash uses a lower work factor than currently configured
+    public boolean needsRehash(String passwordHash) {
+        return passwordEncoder.upgradeEncoding(passwordHash);
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw new TooManyRequestsException("Password hashing capacity exceeded, retry later", retryAfterSeconds);
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            // Queued behind a saturated pool: the same overload as a full queue, so shed it the same way
+            future.cancel(true);
+            timedOut.increment();
+            throw new TooManyRequestsException("Password hashing timed out, retry later", retryAfterSeconds);
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", ex.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,10 @@
+package com.shop.users;
+
+/**
+ * Per-key rate limiter; implementations use GCRA, which behaves like a token bucket
+ * of {@code burst} tokens refilled at {@code perMinute} but needs only one number per key.
+ */
+public interface RateLimiter {
+
+    boolean tryAcquire(String key);
+}
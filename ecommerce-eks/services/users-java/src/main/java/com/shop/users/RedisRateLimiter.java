@@ -0,0 +1,47 @@
+package com.shop.users;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster-wide GCRA limiter: the same algorithm as {@link LocalRateLimiter}, evaluated
+ * atomically in a Lua script against Redis time so every replica shares one budget per key.
+ * Keys expire as soon as they go idle.
+ */
+public class RedisRateLimiter implements RateLimiter {
+
+    private static final RedisScript<Long> GCRA = RedisScript.of("""
+            local t = redis.call('TIME')
+            local now = t[1] * 1000000 + t[2]
+            local interval = tonumber(ARGV[1])
+            local tolerance = tonumber(ARGV[2])
+            local tat = tonumber(redis.call('GET', KEYS[1]) or now)
+            if tat < now then tat = now end
+            if tat - now > tolerance then return 0 end
+            local newTat = tat + interval
+            redis.call('SET', KEYS[1], newTat, 'PX', math.ceil((newTat - now) / 1000))
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redis;
+    private final String prefix;
+    private final String emissionIntervalMicros;
+    private final String toleranceMicros;
+
+    public RedisRateLimiter(StringRedisTemplate redis, String prefix, int perMinute, int burst) {
+        long interval = TimeUnit.MINUTES.toMicros(1) / perMinute;
+        this.redis = redis;
+        this.prefix = prefix;
+        this.emissionIntervalMicros = Long.toString(interval);
+        this.toleranceMicros = Long.toString(interval * (Math.max(1, burst) - 1));
+    }
+
+    @Override
+    public boolean tryAcquire(String key) {
+        Long allowed = redis.execute(GCRA, List.of(prefix + key), emissionIntervalMicros, toleranceMicros);
+        return allowed != null && allowed == 1L;
+    }
+}
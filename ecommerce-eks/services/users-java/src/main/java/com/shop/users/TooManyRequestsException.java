@@ -0,0 +1,29 @@
+package com.shop.users;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Thrown when the service sheds work instead of queueing it; surfaces as 429, with
+ * Retry-After when the thrower knows when capacity is likely to be back.
+ */
+public class TooManyRequestsException extends ResponseStatusException {
+
+    private final HttpHeaders headers = new HttpHeaders();
+
+    public TooManyRequestsException(String message) {
+        super(HttpStatus.TOO_MANY_REQUESTS, message);
+    }
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        this(message);
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    }
+
+    // Copied onto the response by Spring's ResponseStatusExceptionResolver
+    @Override
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+}
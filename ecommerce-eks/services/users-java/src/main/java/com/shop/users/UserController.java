@@ -1,12 +1,21 @@
 package com.shop.users;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
-import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.nio.charset.StandardCharsets;
 import static com.shop.users.UserDtos.RegisterRequest;
 import static com.shop.users.UserDtos.UserResponse;
 import static com.shop.users.UserDtos.LoginRequest;
@@ -22,10 +31,27 @@ public class UserController {
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
-
-    public UserController(UserRepository userRepository) {
+    private final PasswordHasher passwordHasher;
+    private final AuthTokenIssuer authTokenIssuer;
+    private final EmailBloomFilter emailBloomFilter;
+    private final UserImporter userImporter;
+    private final LoginRateLimit loginRateLimit;
+    private final int batchMaxIds;
+
+    public UserController(UserRepository userRepository,
+                          PasswordHasher passwordHasher,
+                          AuthTokenIssuer authTokenIssuer,
+                          EmailBloomFilter emailBloomFilter,
+                          UserImporter userImporter,
+                          LoginRateLimit loginRateLimit,
+                          @Value("${users.batch.max-ids:100}") int batchMaxIds) {
         this.userRepository = userRepository;
+        this.passwordHasher = passwordHasher;
+        this.authTokenIssuer = authTokenIssuer;
+        this.emailBloomFilter = emailBloomFilter;
+        this.userImporter = userImporter;
+        this.loginRateLimit = loginRateLimit;
+        this.batchMaxIds = batchMaxIds;
     }
 
     @GetMapping("/health, /users/health")
@@ -37,10 +63,18 @@ public class UserController {
         );
     }
 
-    @GetMapping("/{id}")
-    public UserResponse getUserById(@PathVariable Long id) {
+    // orders-service may ask for CBOR via Accept; JSON stays the default
+    @GetMapping(value = "/{id}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public UserResponse getUserById(@PathVariable Long id, ServletWebRequest webRequest) {
         logger.info("Fetching user with id={}", id);
 
+        // Answer 304 from the version column alone, before loading the entity
+        var version = userRepository.findVersionById(id);
+        if (version.isPresent() && ConditionalGet.checkNotModified(webRequest, id + "-" + version.get())) {
+            logger.debug("User not modified id={}", id);
+            return null;
+        }
+
         return userRepository.findById(id)
                 .map(user -> {
                     logger.debug("User found id={} email={}", user.getId(), user.getEmail());
@@ -52,6 +86,23 @@ public class UserController {
                 });
     }
 
+    // Bulk read for list views: one IN query, result keyed by id; unknown ids are omitted
+    @GetMapping(params = "ids", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public Map<Long, UserResponse> getUsersByIds(@RequestParam List<Long> ids) {
+        var uniqueIds = new LinkedHashSet<>(ids);
+        logger.info("Fetching {} users by id", uniqueIds.size());
+        if (uniqueIds.isEmpty() || uniqueIds.size() > batchMaxIds) {
+            throw new IllegalArgumentException("ids must contain between 1 and " + batchMaxIds + " ids");
+        }
+
+        Map<Long, UserResponse> users = new LinkedHashMap<>();
+        for (UserEntity user : userRepository.findAllById(uniqueIds)) {
+            users.put(user.getId(), UserResponse.fromEntity(user));
+        }
+        logger.debug("Found {} of {} requested users", users.size(), uniqueIds.size());
+        return users;
+    }
+
     @PostMapping("/register")
     @ResponseStatus(HttpStatus.CREATED)
     public UserResponse register(@RequestBody RegisterRequest request) {
@@ -68,13 +119,19 @@ public class UserController {
             throw new IllegalArgumentException("email, password, fullName, and address fields are required");
         }
 
-        // check if email already exists
-        userRepository.findByEmail(request.email())
-                .ifPresent(existing -> {
-                    throw new IllegalStateException("Email already registered");
-                });
+        // check if email already exists (skipped when the bloom filter rules it out;
+        // uk_users_email still rejects a duplicate the filter missed)
+        boolean lookupSkipped = emailBloomFilter.isDefinitelyAbsent(request.email());
+        if (lookupSkipped) {
+            emailBloomFilter.recordQuerySaved();
+        } else {
+            userRepository.findByEmail(request.email())
+                    .ifPresentOrElse(existing -> {
+                        throw new IllegalStateException("Email already registered");
+                    }, emailBloomFilter::recordFalsePositive);
+        }
 
-        String hashed = passwordEncoder.encode(request.password());
+        String hashed = passwordHasher.hash(request.password());
 
         UserEntity entity = new UserEntity();
         entity.setEmail(request.email());
@@ -87,33 +144,78 @@ public class UserController {
         entity.setCountry(request.country());
         entity.setCreatedAt(Instant.now());
 
-        UserEntity saved = userRepository.save(entity);
+        UserEntity saved;
+        try {
+            saved = userRepository.save(entity);
+        } catch (DataIntegrityViolationException ex) {
+            // uk_users_email is the final authority, e.g. for a concurrent register
+            if (lookupSkipped) {
+                emailBloomFilter.recordFalseNegative(request.email());
+            }
+            throw new IllegalStateException("Email already registered");
+        }
+        emailBloomFilter.add(saved.getEmail());
         logger.info("User registered successfully email={}", request.email());
         return UserResponse.fromEntity(saved);
     }
 
+    // Bulk import for merchant migrations; body and report are both streamed line by line
+    @PostMapping(value = "/import",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                            InputStream body,
+                            HttpServletResponse response) throws IOException {
+        boolean csv = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType("text/csv"));
+        logger.info("User import started format={}", csv ? "csv" : "ndjson");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        userImporter.importUsers(body, csv, response.getOutputStream());
+    }
+
     @PostMapping("/login")
-    public LoginResponse login(@RequestBody LoginRequest request) {
+    public LoginResponse login(@RequestBody LoginRequest request, HttpServletRequest httpRequest) {
         logger.info("User registered successfully email={}", request.email());
+        // Before any DB or BCrypt work; remote address honours X-Forwarded-For from trusted proxies
+        loginRateLimit.check(request.email(), httpRequest.getRemoteAddr());
         if (request.email() == null || request.email().isBlank()
                 || request.password() == null || request.password().isBlank()) {
             throw new IllegalArgumentException("email and password are required");
         }
 
+        // A negative from a freshly synced filter answers without touching the database; the
+        // rest (and a verification sample) do the indexed lookup and report any miss
+        boolean ruledOut = emailBloomFilter.isDefinitelyAbsent(request.email());
+        if (ruledOut && emailBloomFilter.canSkipLoginLookup()) {
+            emailBloomFilter.recordQuerySaved();
+            logger.warn("Login failed: user not found email={}", request.email());
+            throw new IllegalArgumentException("Invalid credentials");
+        }
         var optionalUser = userRepository.findByEmail(request.email());
         if (optionalUser.isEmpty()) {
+            if (!ruledOut) {
+                emailBloomFilter.recordFalsePositive();
+            }
             logger.warn("Login failed: user not found email={}", request.email());
             throw new IllegalArgumentException("Invalid credentials");
         }
+        if (ruledOut) {
+            emailBloomFilter.recordFalseNegative(request.email());
+        }
 
         UserEntity user = optionalUser.get();
-        if (!passwordEncoder.matches(request.password(), user.getPasswordHash())) {
+        if (!passwordHasher.matches(request.password(), user.getPasswordHash())) {
             logger.warn("Login failed: incorrect password email={}", request.email());
             throw new IllegalArgumentException("Invalid credentials");
         }
 
-        String payload = user.getId() + ":" + user.getEmail() + ":" + Instant.now().getEpochSecond();
-        String token = Base64.getEncoder().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        // Upgrade hashes created with an older work factor while we have the plaintext
+        if (passwordHasher.needsRehash(user.getPasswordHash())) {
+            logger.info("Rehashing password with current work factor for userId={}", user.getId());
+            user.setPasswordHash(passwordHasher.hash(request.password()));
+            user = userRepository.save(user);
+        }
+
+        String token = authTokenIssuer.issue(user.getId());
 
         logger.info("Login successful for userId={} email={}", user.getId(), user.getEmail());
 
@@ -41,6 +41,11 @@ public class UserEntity {
     @Column(nullable = false)
     private Instant createdAt;
 
+    // Bumped by JPA on every update; doubles as the ETag for GET /api/users/{id}
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     public UserEntity() {
     }
 
@@ -107,6 +112,10 @@ public class UserEntity {
         return createdAt;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public void setId(Long id) {
         this.id = id;
     }
@@ -0,0 +1,302 @@
+package com.shop.users;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.shop.users.UserDtos.RegisterRequest;
+
+/**
+ * Streams a bulk user import (NDJSON or CSV) in fixed-size batches, so memory use does
+ * not grow with the file. Per batch: validate, dedupe emails (within the file and against
+ * the database with one IN query), hash passwords on the BCrypt pool, then insert with one JDBC
+ * batch. Progress and per-row errors are written back as NDJSON while the import runs.
+ */
+@Component
+public class UserImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImporter.class);
+
+    // Header expected on CSV imports, in this column order
+    private static final String CSV_HEADER = "email,password,fullName,street,city,state,postalCode,country";
+
+    // A duplicate that slipped past the IN check (concurrent register) is skipped and reports
+    // 0 rows. IGNORE would also turn data errors into warnings; validate() rules those out first
+    private static final String INSERT_SQL = """
+            insert ignore into users (email, password_hash, full_name, street, city, state, postal_code, country, created_at, version)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserRepository userRepository;
+    private final PasswordHasher passwordHasher;
+    private final EmailBloomFilter emailBloomFilter;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public UserImporter(JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        UserRepository userRepository,
+                        PasswordHasher passwordHasher,
+                        EmailBloomFilter emailBloomFilter,
+                        ObjectMapper objectMapper,
+                        @Value("${users.import.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.userRepository = userRepository;
+        this.passwordHasher = passwordHasher;
+        this.emailBloomFilter = emailBloomFilter;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    public void importUsers(InputStream body, boolean csv, OutputStream out) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        var report = new Report(out);
+        long start = System.currentTimeMillis();
+
+        if (csv) {
+            String header = reader.readLine();
+            report.lineNumber++;
+            if (header == null || !header.trim().equalsIgnoreCase(CSV_HEADER)) {
+                report.error(report.lineNumber, null, "CSV header must be: " + CSV_HEADER);
+                report.finish(System.currentTimeMillis() - start);
+                return;
+            }
+        }
+
+        List<Row> batch = new ArrayList<>(batchSize);
+        Set<String> seenEmails = new HashSet<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int lineNumber = ++report.lineNumber;
+            if (line.isBlank()) {
+                continue;
+            }
+            report.processed++;
+
+            RegisterRequest request;
+            try {
+                request = csv ? parseCsv(line) : objectMapper.readValue(line, RegisterRequest.class);
+            } catch (JsonProcessingException | IllegalArgumentException ex) {
+                report.error(lineNumber, null, "Unparseable row");
+                continue;
+            }
+
+            String problem = validate(request);
+            if (problem != null) {
+                report.error(lineNumber, request.email(), problem);
+                continue;
+            }
+            if (!seenEmails.add(request.email().toLowerCase(Locale.ROOT))) {
+                report.duplicate(lineNumber, request.email(), "Duplicate email in import");
+                continue;
+            }
+
+            batch.add(new Row(lineNumber, request));
+            if (batch.size() == batchSize) {
+                flush(batch, report);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch, report);
+        }
+
+        report.finish(System.currentTimeMillis() - start);
+        logger.info("User import finished processed={} imported={} duplicates={} errors={}",
+                report.processed, report.imported, report.duplicates, report.errors);
+    }
+
+    private void flush(List<Row> batch, Report report) throws IOException {
+        // 1. Drop emails that are already registered (one IN query per batch)
+        Set<String> existing = userRepository.findExistingEmails(
+                        batch.stream().map(row -> row.request.email()).toList())
+                .stream()
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+
+        List<Row> fresh = new ArrayList<>(batch.size());
+        for (Row row : batch) {
+            if (existing.contains(row.request.email().toLowerCase(Locale.ROOT))) {
+                report.duplicate(row.lineNumber, row.request.email(), "Email already registered");
+            } else {
+                fresh.add(row);
+            }
+        }
+        if (fresh.isEmpty()) {
+            report.progress();
+            return;
+        }
+
+        // 2. Hash in parallel on the BCrypt pool, within its bulk share
+        List<String> hashes = passwordHasher.hashAll(fresh.stream().map(row -> row.request.password()).toList());
+        for (int i = 0; i < fresh.size(); i++) {
+            fresh.get(i).passwordHash = hashes.get(i);
+        }
+
+        // 3. Insert with a single JDBC batch
+        LocalDateTime createdAt = LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
+        int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_SQL, fresh, fresh.size(),
+                (ps, row) -> {
+                    RegisterRequest r = row.request;
+                    ps.setString(1, r.email());
+                    ps.setString(2, row.passwordHash);
+                    ps.setString(3, r.fullName());
+                    ps.setString(4, r.street());
+                    ps.setString(5, r.city());
+                    ps.setString(6, r.state());
+                    ps.setString(7, r.postalCode());
+                    ps.setString(8, r.country());
+                    ps.setObject(9, createdAt);
+                })[0]);
+
+        // Rewritten batches report SUCCESS_NO_INFO per row, so an email registered between step 1
+        // and the insert is ignored by MySQL but still counted here
+        for (int i = 0; i < fresh.size(); i++) {
+            Row row = fresh.get(i);
+            if (counts[i] == 0) {
+                report.duplicate(row.lineNumber, row.request.email(), "Email already registered");
+            } else if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                report.imported++;
+                emailBloomFilter.add(row.request.email());
+            }
+        }
+        report.progress();
+    }
+
+    private static String validate(RegisterRequest r) {
+        if (isBlank(r.email()) || isBlank(r.password()) || isBlank(r.fullName())
+                || isBlank(r.street()) || isBlank(r.city()) || isBlank(r.state())
+                || isBlank(r.postalCode()) || isBlank(r.country())) {
+            return "email, password, fullName, and address fields are required";
+        }
+        // Mirror the column lengths on UserEntity so no row fails the whole batch
+        if (r.email().length() > 180 || r.fullName().length() > 120 || r.street().length() > 200
+                || r.city().length() > 100 || r.state().length() > 100
+                || r.postalCode().length() > 20 || r.country().length() > 100) {
+            return "Field exceeds maximum length";
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // Minimal RFC 4180 field splitting: quoted fields, doubled quotes, no embedded newlines
+    private static RegisterRequest parseCsv(String line) {
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        if (quoted || fields.size() != 8) {
+            throw new IllegalArgumentException("Expected 8 CSV fields");
+        }
+        return new RegisterRequest(fields.get(0), fields.get(1), fields.get(2), fields.get(3),
+                fields.get(4), fields.get(5), fields.get(6), fields.get(7));
+    }
+
+    private static final class Row {
+        final int lineNumber;
+        final RegisterRequest request;
+        String passwordHash;
+
+        Row(int lineNumber, RegisterRequest request) {
+            this.lineNumber = lineNumber;
+            this.request = request;
+        }
+    }
+
+    // Writes one NDJSON line per event and flushes so clients see progress as it happens
+    private final class Report {
+        private final OutputStream out;
+        int lineNumber;
+        long processed;
+        long imported;
+        long duplicates;
+        long errors;
+
+        Report(OutputStream out) {
+            this.out = out;
+        }
+
+        void error(int line, String email, String reason) throws IOException {
+            errors++;
+            write("type", "error", "line", line, "email", email, "reason", reason);
+        }
+
+        void duplicate(int line, String email, String reason) throws IOException {
+            duplicates++;
+            write("type", "duplicate", "line", line, "email", email, "reason", reason);
+        }
+
+        void progress() throws IOException {
+            write("type", "progress", "processed", processed, "imported", imported,
+                    "duplicates", duplicates, "errors", errors);
+        }
+
+        void finish(long elapsedMs) throws IOException {
+            write("type", "summary", "processed", processed, "imported", imported,
+                    "duplicates", duplicates, "errors", errors, "elapsedMs", elapsedMs);
+        }
+
+        // Alternating key/value pairs; null values are left out
+        private void write(Object... keyValues) throws IOException {
+            Map<Object, Object> event = new LinkedHashMap<>();
+            for (int i = 0; i < keyValues.length; i += 2) {
+                if (keyValues[i + 1] != null) {
+                    event.put(keyValues[i], keyValues[i + 1]);
+                }
+            }
+            out.write(objectMapper.writeValueAsBytes(event));
+            out.write('\n');
+            out.flush();
+        }
+    }
+}